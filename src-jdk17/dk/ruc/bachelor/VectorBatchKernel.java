@@ -0,0 +1,83 @@
+package dk.ruc.bachelor;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Batch kernel that handles as many instances at a time as fit in a vector register. The values of the instances are gathered from the tables with the offsets of their states, and the comparisons of the scalar kernel are done for all lanes at once with masks. The instances that do not fill a whole vector are handled by the scalar kernel. It needs JDK 17 or newer with the jdk.incubator.vector module, so it is compiled separately from the Java 9 sources
+ */
+class VectorBatchKernel implements BatchKernel {
+
+    //Vectors of 8 ints. The compiled gathers of wider vectors crash the JVM of JDK 17 on AVX-512 machines
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+
+    //Handles the instances after the last whole vector
+    ScalarBatchKernel tail = new ScalarBatchKernel();
+
+    @Override
+    public void decide(int[] Q, int[] R, int[] rows, int[] validActions, int[] action, int from, int to) {
+        int end = from + SPECIES.loopBound(to - from);
+        for (int i = from; i < end; i += SPECIES.length()) {
+            IntVector valid = IntVector.fromArray(SPECIES, validActions, i);
+            IntVector bestAction = IntVector.fromArray(SPECIES, action, i);
+            IntVector value0 = value(Q, R, rows, i, 0);
+            IntVector value1 = value(Q, R, rows, i, 1);
+            IntVector value2 = value(Q, R, rows, i, 2);
+            IntVector value3 = value(Q, R, rows, i, 3);
+
+            //The value of the random action is picked out of the values of all actions, then each valid action with a greater value takes over like in the scalar loop
+            IntVector bestValue = value0.blend(value1, bestAction.eq(1)).blend(value2, bestAction.eq(2)).blend(value3, bestAction.eq(3));
+            VectorMask<Integer> better = value0.compare(VectorOperators.GT, bestValue).and(valid.and(1).compare(VectorOperators.NE, 0));
+            bestAction = bestAction.blend(0, better);
+            bestValue = bestValue.blend(value0, better);
+            better = value1.compare(VectorOperators.GT, bestValue).and(valid.and(2).compare(VectorOperators.NE, 0));
+            bestAction = bestAction.blend(1, better);
+            bestValue = bestValue.blend(value1, better);
+            better = value2.compare(VectorOperators.GT, bestValue).and(valid.and(4).compare(VectorOperators.NE, 0));
+            bestAction = bestAction.blend(2, better);
+            bestValue = bestValue.blend(value2, better);
+            better = value3.compare(VectorOperators.GT, bestValue).and(valid.and(8).compare(VectorOperators.NE, 0));
+            bestAction = bestAction.blend(3, better);
+            bestAction.intoArray(action, i);
+        }
+        tail.decide(Q, R, rows, validActions, action, end, to);
+    }
+
+    @Override
+    public void maxActions(int[] Q, int[] R, int[] rows, int[] maxAction, int from, int to) {
+        int end = from + SPECIES.loopBound(to - from);
+        for (int i = from; i < end; i += SPECIES.length()) {
+            IntVector maxValue = IntVector.zero(SPECIES);
+            IntVector bestAction = IntVector.zero(SPECIES);
+            for (int a = 0; a < 4; a++) {
+                IntVector value = value(Q, R, rows, i, a);
+                VectorMask<Integer> better = value.compare(VectorOperators.GE, maxValue);
+                maxValue = maxValue.blend(value, better);
+                bestAction = bestAction.blend(a, better);
+            }
+            bestAction.intoArray(maxAction, i);
+        }
+        tail.maxActions(Q, R, rows, maxAction, end, to);
+    }
+
+    /**
+     * Gathers the values of an action of the instances in one vector
+     *
+     * @param Q      The Q-values of all instances
+     * @param R      The rewards of all instances
+     * @param rows   Offset of the state of each instance in the tables
+     * @param i      The first instance of the vector
+     * @param action The action
+     * @return Returns the reward plus the Q-value of the action for each instance
+     */
+    static IntVector value(int[] Q, int[] R, int[] rows, int i, int action) {
+        return IntVector.fromArray(SPECIES, Q, action, rows, i).add(IntVector.fromArray(SPECIES, R, action, rows, i));
+    }
+
+    @Override
+    public String name() {
+        return "vector " + SPECIES.length() + " lanes";
+    }
+}
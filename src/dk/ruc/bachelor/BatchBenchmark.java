@@ -0,0 +1,87 @@
+package dk.ruc.bachelor;
+
+/**
+ * Benchmark that compares stepping many mazes one Logic at a time with stepping them together in a batch environment, with the scalar kernel and with the vector kernel if it can be loaded. All train the same number of instances on the same map with different learning rates. The vector kernel is only loaded when the program runs on JDK 17 or newer with --add-modules jdk.incubator.vector and the compiled vector kernel on the class path
+ */
+public class BatchBenchmark {
+
+    //Number of iterations and the length of each iteration
+    static final int WARMUP_ITERATIONS = 5;
+    static final int MEASUREMENT_ITERATIONS = 10;
+    static final long ITERATION_TIME = 200000000; //Nanoseconds
+
+    public static void main(String[] args) {
+        int map = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+        Logic[] logics = new Logic[count];
+        BatchEnvironment scalar = new BatchEnvironment(count, new SplittableRng(42));
+        scalar.kernel = new ScalarBatchKernel();
+        BatchEnvironment vector = new BatchEnvironment(count, new SplittableRng(42));
+        if (vector.kernel instanceof ScalarBatchKernel) vector = null;
+        for (int i = 0; i < count; i++) {
+            double alpha = (i + 1.0) / count;
+            logics[i] = new Logic();
+            logics[i].alpha = alpha;
+            logics[i].setSeed(42 + i);
+            logics[i].setMap(map);
+            scalar.setInstance(i, logics[i].map, alpha, 0.8);
+            if (vector != null) vector.setInstance(i, logics[i].map, alpha, 0.8);
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measure(logics);
+            measure(scalar);
+            if (vector != null) measure(vector);
+        }
+        double logicSteps = 0;
+        double scalarSteps = 0;
+        double vectorSteps = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            logicSteps += measure(logics) / MEASUREMENT_ITERATIONS;
+            scalarSteps += measure(scalar) / MEASUREMENT_ITERATIONS;
+            if (vector != null) vectorSteps += measure(vector) / MEASUREMENT_ITERATIONS;
+        }
+        System.out.println("Map " + map + ", " + count + " instances");
+        System.out.printf("one at a time\t%.0f steps/sec%n", logicSteps);
+        System.out.printf("batch, %s\t%.0f steps/sec\t%.2fx%n", scalar.kernel.name(), scalarSteps, scalarSteps / logicSteps);
+        if (vector != null) System.out.printf("batch, %s\t%.0f steps/sec\t%.2fx%n", vector.kernel.name(), vectorSteps, vectorSteps / logicSteps);
+        else System.out.println("batch, vector kernel not available");
+    }
+
+    /**
+     * Steps every logic once per round for one iteration
+     *
+     * @param logics The logics to train
+     * @return Returns the steps per second of the iteration
+     */
+    static double measure(Logic[] logics) {
+        long steps = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            for (Logic logic : logics) logic.doAction(true);
+            steps += logics.length;
+            now = System.nanoTime();
+        } while (now - start < ITERATION_TIME);
+        return steps * 1e9 / (now - start);
+    }
+
+    /**
+     * Steps the batch for one iteration
+     *
+     * @param batch The batch to train
+     * @return Returns the steps per second of the iteration
+     */
+    static double measure(BatchEnvironment batch) {
+        long steps = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            batch.step(true);
+            steps += batch.count;
+            now = System.nanoTime();
+        } while (now - start < ITERATION_TIME);
+        return steps * 1e9 / (now - start);
+    }
+}
@@ -0,0 +1,216 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Many independent mazes that are stepped together. The agents are stored as arrays instead of one object per agent, the Q and R tables of all instances are two flat int arrays, and each map is turned once into an array of packed fields that give the state, the valid actions and the goal actions of an agent standing there. A step advances every instance in phases, and each phase is a loop over plain int arrays. The phases that compare the values of the actions run in a batch kernel, which uses the Vector API when it is available. Every instance learns exactly like a Logic with int values, the 3x3 vision and the same generator
+ */
+class BatchEnvironment {
+
+    //Number of instances
+    int count;
+
+    //The values shared by all instances. Only the 3x3 vision fits dense tables for thousands of instances
+    static final int VISION_RANGE = 1;
+    static final int NUMBER_OF_STATES = (int) Logic.numberOfStates(VISION_RANGE);
+    static final int NUMBER_OF_ACTIONS = 4;
+    static final int TABLE_SIZE = NUMBER_OF_STATES * NUMBER_OF_ACTIONS;
+    int QZero = 0;
+    int rewardValue = 10000000;
+
+    //The Q and R tables of all instances, the value of an action is at instance * TABLE_SIZE + state * NUMBER_OF_ACTIONS + action
+    int[] Q, R;
+
+    //How a field is packed: the valid actions in the lowest 4 bits, then the goal actions, a bit that is set on the goal and the state id in the rest
+    static final int VALID_ACTIONS = 15;
+    static final int GOAL_ACTIONS_SHIFT = 4;
+    static final int GOAL = 1 << 8;
+    static final int STATE_SHIFT = 9;
+
+    //The packed fields of all maps in use, column by column, and where each map starts
+    int[] fields = new int[0];
+    Map<Grid, Integer> fieldOffsets = new IdentityHashMap<>();
+
+    //The map of each instance, where its fields start and its number of rows
+    Grid[] maps;
+    int[] fieldOffset, mapRows;
+
+    //The learning values of each instance
+    double[] alpha, gamma;
+
+    //The random generator of each instance
+    Rng[] random;
+
+    //Position of each agent and the moves in its current episode
+    int[] agentX, agentY, moves;
+
+    //Offset of the state in the tables, valid actions and action of each agent in the current step, and the offset of the new state and its best action after the move
+    int[] rows, validActions, action, nextRows, maxAction;
+
+    //Statistics of each instance
+    long[] episodes, steps;
+    int[] lastEpisodeSteps;
+
+    //Compares the values of the actions of all instances
+    BatchKernel kernel = BatchKernel.create();
+
+    /**
+     * Constructor creates the arrays for a number of instances. Each instance must be given a map before stepping
+     *
+     * @param countInput Number of instances
+     * @param master     The generator the generators of the instances are split from
+     */
+    BatchEnvironment(int countInput, Rng master) {
+        if (countInput < 1) throw new IllegalArgumentException("A batch needs at least one instance");
+        if ((long) countInput * TABLE_SIZE > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("The tables of " + countInput + " instances do not fit in one array");
+        count = countInput;
+        Q = new int[count * TABLE_SIZE];
+        R = new int[count * TABLE_SIZE];
+        maps = new Grid[count];
+        fieldOffset = new int[count];
+        mapRows = new int[count];
+        alpha = new double[count];
+        gamma = new double[count];
+        random = new Rng[count];
+        agentX = new int[count];
+        agentY = new int[count];
+        moves = new int[count];
+        rows = new int[count];
+        validActions = new int[count];
+        action = new int[count];
+        nextRows = new int[count];
+        maxAction = new int[count];
+        episodes = new long[count];
+        steps = new long[count];
+        lastEpisodeSteps = new int[count];
+        for (int i = 0; i < count; i++) random[i] = master.split();
+    }
+
+    /**
+     * Sets the map and learning values of an instance and resets its tables
+     *
+     * @param i          The instance
+     * @param map        The map, which may be shared with other instances
+     * @param alphaInput Learning rate
+     * @param gammaInput Discount factor
+     */
+    void setInstance(int i, Grid map, double alphaInput, double gammaInput) {
+        maps[i] = map;
+        fieldOffset[i] = fieldOffset(map);
+        mapRows[i] = map.rows;
+        Arrays.fill(Q, i * TABLE_SIZE, (i + 1) * TABLE_SIZE, QZero);
+        Arrays.fill(R, i * TABLE_SIZE, (i + 1) * TABLE_SIZE, 0);
+        alpha[i] = alphaInput;
+        gamma[i] = gammaInput;
+        agentX[i] = 1;
+        agentY[i] = 1;
+        moves[i] = 0;
+        episodes[i] = 0;
+        steps[i] = 0;
+        lastEpisodeSteps[i] = 0;
+    }
+
+    /**
+     * Finds where the packed fields of a map start, and packs them the first time the map is used
+     *
+     * @param map The map
+     * @return Returns the offset of the fields of the map
+     */
+    int fieldOffset(Grid map) {
+        Integer offset = fieldOffsets.get(map);
+        if (offset != null) return offset;
+        if ((long) fields.length + (long) map.columns * map.rows > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("The maps of the batch are too big");
+        int start = fields.length;
+        fields = Arrays.copyOf(fields, start + map.columns * map.rows);
+        StateIndex index = new StateIndex(map, VISION_RANGE);
+        for (int x = 0; x < map.columns; x++) {
+            for (int y = 0; y < map.rows; y++) {
+                int field = index.validActions(x, y) | index.goalActions(x, y) << GOAL_ACTIONS_SHIFT | (int) index.get(x, y) << STATE_SHIFT;
+                if (map.get(x, y) == 2) field |= GOAL;
+                fields[start + x * map.rows + y] = field;
+            }
+        }
+        fieldOffsets.put(map, start);
+        return start;
+    }
+
+    /**
+     * Advances every instance by one step
+     *
+     * @param shouldTrain If true the Q-tables are updated
+     * @return Returns the number of instances that reached the goal in this step
+     */
+    int step(boolean shouldTrain) {
+        //Read the field of each agent, reward the actions that reach the goal and pick a random valid action
+        for (int i = 0; i < count; i++) {
+            int field = fields[fieldOffset[i] + agentX[i] * mapRows[i] + agentY[i]];
+            int row = i * TABLE_SIZE + (field >>> STATE_SHIFT) * NUMBER_OF_ACTIONS;
+            for (int goalActions = field >>> GOAL_ACTIONS_SHIFT & 15; goalActions != 0; goalActions &= goalActions - 1) R[row + Integer.numberOfTrailingZeros(goalActions)] = rewardValue;
+            int valid = field & VALID_ACTIONS;
+            int actions = valid;
+            for (int j = random[i].nextInt(Integer.bitCount(actions)); j > 0; j--) actions &= actions - 1;
+            rows[i] = row;
+            validActions[i] = valid;
+            action[i] = Integer.numberOfTrailingZeros(actions);
+        }
+
+        //Take any valid action with a greater value than the random one
+        kernel.decide(Q, R, rows, validActions, action, 0, count);
+
+        //Move all agents
+        for (int i = 0; i < count; i++) {
+            agentX[i] += Logic.DX[action[i]];
+            agentY[i] += Logic.DY[action[i]];
+            moves[i]++;
+        }
+
+        if (shouldTrain) {
+            for (int i = 0; i < count; i++) nextRows[i] = i * TABLE_SIZE + (fields[fieldOffset[i] + agentX[i] * mapRows[i] + agentY[i]] >>> STATE_SHIFT) * NUMBER_OF_ACTIONS;
+            kernel.maxActions(Q, R, nextRows, maxAction, 0, count);
+            for (int i = 0; i < count; i++) {
+                int index = rows[i] + action[i];
+                Q[index] = (int) ((1 - alpha[i]) * Q[index] + alpha[i] * (R[index] + gamma[i] * Q[nextRows[i] + maxAction[i]]));
+            }
+        }
+
+        //Start a new episode in the instances that reached the goal
+        int finished = 0;
+        for (int i = 0; i < count; i++) {
+            if ((fields[fieldOffset[i] + agentX[i] * mapRows[i] + agentY[i]] & GOAL) == 0) continue;
+            finished++;
+            episodes[i]++;
+            steps[i] += moves[i];
+            lastEpisodeSteps[i] = moves[i];
+            agentX[i] = 1;
+            agentY[i] = 1;
+            moves[i] = 0;
+        }
+        return finished;
+    }
+
+    /**
+     * Advances every instance by a number of steps
+     *
+     * @param stepCount   Number of steps
+     * @param shouldTrain If true the Q-tables are updated
+     * @return Returns the number of episodes finished by all instances together
+     */
+    long run(long stepCount, boolean shouldTrain) {
+        long finished = 0;
+        for (long i = 0; i < stepCount; i++) finished += step(shouldTrain);
+        return finished;
+    }
+
+    /**
+     * Finds the total number of steps of the finished episodes of all instances
+     *
+     * @return Returns the number of steps
+     */
+    long totalSteps() {
+        long total = 0;
+        for (long instanceSteps : steps) total += instanceSteps;
+        return total;
+    }
+}
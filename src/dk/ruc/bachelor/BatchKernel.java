@@ -0,0 +1,55 @@
+package dk.ruc.bachelor;
+
+/**
+ * The loops of a batch environment that compare the values of the actions of every instance. The tables of all instances are one flat array and each instance is given by the offset of its current state in it, so a kernel only sees plain int arrays and can step many instances at once, e.g. with the Vector API. The scalar kernel is always available, the vector kernel is compiled separately for newer JDKs and is used when it can be loaded
+ */
+interface BatchKernel {
+
+    //Name of the kernel that uses the Vector API, which is not part of the Java 9 sources
+    String VECTOR_KERNEL = "dk.ruc.bachelor.VectorBatchKernel";
+
+    /**
+     * Decides the action of every instance the same way as Logic does: the random valid action is kept unless a valid action has a greater value
+     *
+     * @param Q            The Q-values of all instances
+     * @param R            The rewards of all instances
+     * @param rows         Offset of the current state of each instance in the tables
+     * @param validActions Bit mask of the actions that do not walk into a wall for each instance
+     * @param action       The random valid action of each instance, replaced by the decided action
+     * @param from         The first instance
+     * @param to           The instance after the last instance
+     */
+    void decide(int[] Q, int[] R, int[] rows, int[] validActions, int[] action, int from, int to);
+
+    /**
+     * Finds the best action in the new state of every instance the same way as Logic.maxQ does
+     *
+     * @param Q         The Q-values of all instances
+     * @param R         The rewards of all instances
+     * @param rows      Offset of the new state of each instance in the tables
+     * @param maxAction Gets the best action of each instance
+     * @param from      The first instance
+     * @param to        The instance after the last instance
+     */
+    void maxActions(int[] Q, int[] R, int[] rows, int[] maxAction, int from, int to);
+
+    /**
+     * Finds the name of the kernel
+     *
+     * @return Returns the name
+     */
+    String name();
+
+    /**
+     * Creates the fastest kernel that can be used. The vector kernel is loaded by name, so it is only used when it has been compiled and the jdk.incubator.vector module is added to the program
+     *
+     * @return Returns the vector kernel if it can be loaded, otherwise the scalar kernel
+     */
+    static BatchKernel create() {
+        try {
+            return (BatchKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBatchKernel();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package dk.ruc.bachelor;
+
+/**
+ * Picks each valid action with a probability that grows with its value, exp(value / temperature) relative to the other valid actions. A high temperature picks almost uniformly and a low one almost always picks the best action. The temperature is in the units of the values, so with the default reward it should be in the millions. The greatest value is subtracted before exp so it never overflows
+ */
+class BoltzmannExploration implements ExplorationStrategy {
+
+    //The settings the strategy was created with
+    double initialTemperature, decay, minTemperature;
+
+    //The current temperature
+    double temperature;
+
+    //The weight of each action, reused every step
+    double[] weights = new double[4];
+
+    /**
+     * Constructor sets the temperature and how it decays
+     *
+     * @param temperatureInput    Temperature at the start
+     * @param decayInput          Factor the temperature is multiplied by after each episode, 1 keeps it constant
+     * @param minTemperatureInput The lowest temperature
+     */
+    BoltzmannExploration(double temperatureInput, double decayInput, double minTemperatureInput) {
+        if (temperatureInput <= 0) throw new IllegalArgumentException("The temperature must be above 0");
+        if (decayInput <= 0 || decayInput > 1) throw new IllegalArgumentException("The decay must be above 0 and at most 1");
+        if (minTemperatureInput < 0 || minTemperatureInput > temperatureInput) throw new IllegalArgumentException("The minimum temperature must be between 0 and the starting temperature");
+        initialTemperature = temperatureInput;
+        decay = decayInput;
+        minTemperature = Math.max(minTemperatureInput, Double.MIN_NORMAL);
+        temperature = temperatureInput;
+    }
+
+    @Override
+    public int decide(Logic logic, int validActions) {
+        if (weights.length < logic.numberOfActions) weights = new double[logic.numberOfActions];
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (int actions = validActions; actions != 0; actions &= actions - 1) {
+            maxValue = Math.max(maxValue, ExplorationStrategy.value(logic, logic.state, Integer.numberOfTrailingZeros(actions)));
+        }
+        double total = 0;
+        for (int actions = validActions; actions != 0; actions &= actions - 1) {
+            int action = Integer.numberOfTrailingZeros(actions);
+            weights[action] = Math.exp((ExplorationStrategy.value(logic, logic.state, action) - maxValue) / temperature);
+            total += weights[action];
+        }
+
+        //Walk through the valid actions until the drawn point is passed
+        double point = logic.random.nextDouble() * total;
+        int action = Integer.numberOfTrailingZeros(validActions);
+        for (int actions = validActions; actions != 0; actions &= actions - 1) {
+            action = Integer.numberOfTrailingZeros(actions);
+            point -= weights[action];
+            if (point < 0) break;
+        }
+        return action;
+    }
+
+    @Override
+    public void episodeFinished() {
+        temperature = Math.max(minTemperature, temperature * decay);
+    }
+
+    @Override
+    public void reset() {
+        temperature = initialTemperature;
+    }
+
+    @Override
+    public ExplorationStrategy copy() {
+        return new BoltzmannExploration(initialTemperature, decay, minTemperature);
+    }
+}
@@ -0,0 +1,263 @@
+package dk.ruc.bachelor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A saved training: the Q and R tables together with the values used to train them. The file starts with a header of 64 bytes followed by the values of the tables in little endian order. Dense tables are stored value by value, so a file can be memory mapped and used as an off-heap table without copying it. Sparse tables are stored as the states they hold, each followed by its values
+ */
+class Checkpoint {
+
+    //Identifies the file type and the version of the format
+    static final int MAGIC = 0x514C4D5A; //"QLMZ"
+    static final int VERSION = 1;
+
+    //Size of the header, which keeps the values aligned to 8 bytes
+    static final int HEADER_SIZE = 64;
+
+    //The saved tables
+    QTable Q, R;
+
+    //The values used to train the tables
+    int visionRange;
+    double alpha, gamma;
+    int rewardValue, QZero;
+
+    /**
+     * Takes a snapshot of the tables and values of a logic. The tables are copied, so training can continue while the snapshot is written
+     *
+     * @param logic The logic to take a snapshot of
+     * @return Returns the snapshot
+     */
+    static Checkpoint of(Logic logic) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.Q = logic.Q.copy();
+        checkpoint.R = logic.R.copy();
+        checkpoint.visionRange = logic.visionRange;
+        checkpoint.alpha = logic.alpha;
+        checkpoint.gamma = logic.gamma;
+        checkpoint.rewardValue = logic.rewardValue;
+        checkpoint.QZero = logic.QZero;
+        return checkpoint;
+    }
+
+    /**
+     * Gives a logic the tables and values of the checkpoint
+     *
+     * @param logic The logic to restore
+     */
+    void restore(Logic logic) {
+        logic.alpha = alpha;
+        logic.gamma = gamma;
+        logic.rewardValue = rewardValue;
+        logic.QZero = QZero;
+        logic.precision = Q.precision;
+        logic.storage = Q.storage;
+        logic.visionRange = visionRange;
+        logic.numberOfStates = Q.numberOfStates;
+        logic.stateIndex = new StateIndex(logic.map, visionRange);
+        logic.Q = Q;
+        logic.R = R;
+        if (logic.replay != null) logic.replay.clear();
+        if (logic.planner != null) logic.planner.reset();
+    }
+
+    /**
+     * Writes the checkpoint to a file. It is written to a temporary file first and then moved, so a crash never leaves half a file
+     *
+     * @param path The file to write
+     * @throws IOException If the file could not be written
+     */
+    void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.putInt(Q.precision.ordinal()).putInt(Q.storage == QTable.Storage.SPARSE ? 1 : 0);
+            header.putInt(visionRange).putInt(Q.numberOfActions).putLong(Q.numberOfStates);
+            header.putDouble(alpha).putDouble(gamma);
+            header.putInt(rewardValue).putInt(QZero);
+            header.clear();
+            write(channel, header);
+            if (Q.storage == QTable.Storage.SPARSE) {
+                writeSparse(channel, (SparseQTable) Q);
+                writeSparse(channel, (SparseQTable) R);
+            } else {
+                writeDense(channel, Q);
+                writeDense(channel, R);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes all values of a dense table
+     *
+     * @param channel The file to write to
+     * @param table   The table
+     * @throws IOException If the file could not be written
+     */
+    static void writeDense(FileChannel channel, QTable table) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (long state = 0; state < table.numberOfStates; state++) {
+            if (buffer.remaining() < table.numberOfActions * 8) write(channel, buffer.flip());
+            for (int action = 0; action < table.numberOfActions; action++) putValue(buffer, table.precision, table.get(state, action));
+        }
+        write(channel, buffer.flip());
+    }
+
+    /**
+     * Writes the value of unstored states followed by each stored state and its values
+     *
+     * @param channel The file to write to
+     * @param table   The table
+     * @throws IOException If the file could not be written
+     */
+    static void writeSparse(FileChannel channel, SparseQTable table) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putFloat(table.defaultValue).putInt(table.size);
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            if (table.keys[slot] == 0) continue;
+            if (buffer.remaining() < 8 + table.numberOfActions * 4) write(channel, buffer.flip());
+            buffer.putLong(table.keys[slot] - 1);
+            for (int action = 0; action < table.numberOfActions; action++) buffer.putFloat(table.values[slot * table.numberOfActions + action]);
+        }
+        write(channel, buffer.flip());
+    }
+
+    /**
+     * Writes a buffer to the file and clears it
+     *
+     * @param channel The file to write to
+     * @param buffer  The buffer to write
+     * @throws IOException If the file could not be written
+     */
+    static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Puts a value in a buffer with the number of bytes of the precision
+     *
+     * @param buffer    The buffer
+     * @param precision The type of the value
+     * @param value     The value
+     */
+    static void putValue(ByteBuffer buffer, QTable.Precision precision, double value) {
+        if (precision == QTable.Precision.INT) buffer.putInt((int) value);
+        else if (precision == QTable.Precision.FLOAT) buffer.putFloat((float) value);
+        else buffer.putDouble(value);
+    }
+
+    /**
+     * Reads a checkpoint from a file. The file is opened for reading only and memory mapped read-only, so a checkpoint on a read-only disk or without write permission can be loaded. Dense tables use the mapped file directly until the first value is written, then the table copies the values into memory
+     *
+     * @param path The file to read
+     * @return Returns the checkpoint
+     * @throws IOException If the file could not be read or is not a checkpoint
+     */
+    static Checkpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            if (file.capacity() < HEADER_SIZE || file.getInt() != MAGIC) throw new IOException(path + " is not a checkpoint");
+            int version = file.getInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+
+            //The header is checked before anything is allocated, so a damaged file gives an IOException and never a table of the wrong size
+            Checkpoint checkpoint = new Checkpoint();
+            int precisionIndex = file.getInt();
+            if (precisionIndex < 0 || precisionIndex >= QTable.Precision.values().length) throw new IOException("Unknown precision " + precisionIndex + " in the checkpoint");
+            QTable.Precision precision = QTable.Precision.values()[precisionIndex];
+            int sparseFlag = file.getInt();
+            if (sparseFlag != 0 && sparseFlag != 1) throw new IOException("Unknown storage " + sparseFlag + " in the checkpoint");
+            boolean sparse = sparseFlag == 1;
+            checkpoint.visionRange = file.getInt();
+            if (checkpoint.visionRange != 1 && checkpoint.visionRange != 2) throw new IOException("Unsupported vision range " + checkpoint.visionRange + " in the checkpoint");
+            int numberOfActions = file.getInt();
+            if (numberOfActions != Logic.DX.length) throw new IOException("The checkpoint has " + numberOfActions + " actions instead of " + Logic.DX.length);
+            long numberOfStates = file.getLong();
+            if (numberOfStates != Logic.numberOfStates(checkpoint.visionRange)) throw new IOException("The checkpoint has " + numberOfStates + " states instead of " + Logic.numberOfStates(checkpoint.visionRange));
+            if (!sparse && numberOfStates * numberOfActions * OffHeapQTable.valueSize(precision) > Integer.MAX_VALUE) throw new IOException("The dense tables of the checkpoint are too big");
+            checkpoint.alpha = file.getDouble();
+            checkpoint.gamma = file.getDouble();
+            checkpoint.rewardValue = file.getInt();
+            checkpoint.QZero = file.getInt();
+            file.position(HEADER_SIZE);
+
+            if (sparse) {
+                checkpoint.Q = readSparse(file, precision, numberOfStates, numberOfActions);
+                checkpoint.R = readSparse(file, precision, numberOfStates, numberOfActions);
+            } else {
+                checkpoint.Q = readDense(file, precision, (int) numberOfStates, numberOfActions);
+                checkpoint.R = readDense(file, precision, (int) numberOfStates, numberOfActions);
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Reads a dense table. On little endian machines the table uses the file without copying it until it is written
+     *
+     * @param file            The mapped file positioned at the table
+     * @param precision       The type of the values
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     * @return Returns the table
+     * @throws IOException If the file is too short
+     */
+    static QTable readDense(ByteBuffer file, QTable.Precision precision, int numberOfStates, int numberOfActions) throws IOException {
+        long bytes = (long) numberOfStates * numberOfActions * OffHeapQTable.valueSize(precision);
+        if (file.remaining() < bytes) throw new IOException("The checkpoint is too short");
+        int size = (int) bytes;
+        ByteBuffer values = file.slice();
+        values.limit(size);
+        file.position(file.position() + size);
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) return new OffHeapQTable(values.slice(), numberOfStates, numberOfActions, precision);
+
+        //The values must be in the native order to be used directly, so they are copied instead
+        values.order(ByteOrder.LITTLE_ENDIAN);
+        QTable table = QTable.create(precision, QTable.Storage.OFF_HEAP, numberOfStates, numberOfActions);
+        for (int state = 0; state < numberOfStates; state++) {
+            for (int action = 0; action < numberOfActions; action++) {
+                if (precision == QTable.Precision.INT) table.set(state, action, values.getInt());
+                else if (precision == QTable.Precision.FLOAT) table.set(state, action, values.getFloat());
+                else table.set(state, action, values.getDouble());
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Reads a sparse table. Sparse tables are always copied into a new table
+     *
+     * @param file            The mapped file positioned at the table
+     * @param precision       The type of the values
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     * @return Returns the table
+     * @throws IOException If the file is too short or stores a state that does not exist
+     */
+    static QTable readSparse(ByteBuffer file, QTable.Precision precision, long numberOfStates, int numberOfActions) throws IOException {
+        if (file.remaining() < 8) throw new IOException("The checkpoint is too short");
+        SparseQTable table = new SparseQTable(numberOfStates, numberOfActions, precision);
+        table.fill(file.getFloat());
+        int size = file.getInt();
+        if (size < 0 || size > numberOfStates || file.remaining() < size * (8L + 4L * numberOfActions)) throw new IOException("The checkpoint is too short for " + size + " states");
+        for (int i = 0; i < size; i++) {
+            long state = file.getLong();
+            if (state < 0 || state >= numberOfStates) throw new IOException("The checkpoint stores state " + state + " of " + numberOfStates);
+            int slot = table.materialize(state);
+            for (int action = 0; action < numberOfActions; action++) table.values[slot * numberOfActions + action] = file.getFloat();
+        }
+        return table;
+    }
+}
@@ -0,0 +1,82 @@
+package dk.ruc.bachelor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves checkpoints in the background during long trainings. The training thread only copies the tables, the file is written by another thread. If the previous checkpoint is still being written the new one is skipped, so a slow disk never stalls the training
+ */
+class CheckpointWriter {
+
+    //The file the checkpoints are written to
+    Path path;
+
+    //The thread writing the checkpoints
+    ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //True while a checkpoint is being written
+    AtomicBoolean writing = new AtomicBoolean(false);
+
+    //Number of checkpoints written, counted on the writer thread, and skipped, counted on the training thread
+    AtomicInteger written = new AtomicInteger();
+    int skipped;
+
+    //The last error from writing, or null
+    volatile IOException error;
+
+    /**
+     * Constructor sets the file to write to
+     *
+     * @param pathInput The file
+     */
+    CheckpointWriter(Path pathInput) {
+        path = pathInput;
+    }
+
+    /**
+     * Takes a snapshot of a logic and writes it in the background
+     *
+     * @param logic The logic to save
+     */
+    void checkpoint(Logic logic) {
+        if (!writing.compareAndSet(false, true)) {
+            skipped++;
+            return;
+        }
+        Checkpoint checkpoint = Checkpoint.of(logic);
+        executor.execute(() -> {
+            try {
+                checkpoint.write(path);
+                written.incrementAndGet();
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Waits for the checkpoint being written and stops the writer thread
+     *
+     * @throws IOException If a checkpoint could not be written
+     */
+    void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) throw error;
+    }
+}
@@ -1,35 +1,59 @@
 package dk.ruc.bachelor;
 
 import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
-import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * The primary function of the controller is to visualize the game and getting user input through the GUI
  */
 public class Controller {
 
+    //The training engine, the controller only visualizes it
+    TrainingEngine engine;
+
     //The logic used for anything game and training related
     Logic logic;
 
+    //Draws the map and the agent
+    MazeRenderer renderer;
+
+    //Runs the agent on a background thread when it plays
+    SimulationScheduler scheduler = new SimulationScheduler();
+
+    //The training running on a background thread
+    TrainingTask trainingTask;
+
     //Animation timer used for the game loop
     AnimationTimer gameLoopTimer;
 
+    //The file the training is saved to and loaded from
+    Path savePath = Paths.get("qlearning.qtable");
+
+    //The trained agent compiled when it starts playing
+    Policy policy;
+
     //Fixed framerate
     int framesPerSecond = 60;
 
     //JavaFX elements
     public Canvas canvas;
     public Label labelTrained, labelSteps;
-    public Button buttonTrain, buttonReset, buttonRun, buttonRandomMap;
+    public Button buttonTrain, buttonReset, buttonRun, buttonRandomMap, buttonSave, buttonLoad;
     public RadioButton rbZero, rbRandom1, rbRandom2, rbRandom3, rbCustom1, rbCustom2, rbCustom3, rbCustom4, rbRandomLevels;
     public ToggleGroup tgMap = new ToggleGroup();
     public RadioButton rbTrain10, rbTrain100, rbTrain1000;
     public ToggleGroup tgTrainings = new ToggleGroup();
+    public RadioButton rbSpeed60, rbSpeed600, rbSpeedUnbounded;
+    public ToggleGroup tgSpeed = new ToggleGroup();
 
     //Booleans if the game is running or training
     boolean running = false;
@@ -38,12 +62,21 @@ public class Controller {
     //the current map
     int currentMap = 0;
 
-    //Counter for training rounds done
-    int trainingCount = 0;
-
     //Fixed number of training rounds each time an agent is trained
     int trainingRounds = 10;
 
+    //Steps per second when the agent plays
+    double playRate = 60;
+
+    //Training stops early when this many episodes in a row have not changed the policy
+    int convergenceWindow = 50;
+
+    //Stops training episodes that walk in circles for too long
+    EpisodeWatchdog watchdog = new EpisodeWatchdog(1000000, 0);
+
+    //Episodes the watchdog had stopped when the current training started, since it counts all trainings
+    long stoppedBeforeTraining;
+
     /**
      * Initializes everything and displays the game once started up
      */
@@ -80,22 +113,36 @@ public class Controller {
         rbTrain100.setOnAction(e -> trainingRounds = 100);
         rbTrain1000.setOnAction(e -> trainingRounds = 1000);
 
+        rbSpeed60.setToggleGroup(tgSpeed);
+        rbSpeed600.setToggleGroup(tgSpeed);
+        rbSpeedUnbounded.setToggleGroup(tgSpeed);
+        rbSpeed60.setSelected(true);
+
+        rbSpeed60.setOnAction(e -> setPlayRate(60));
+        rbSpeed600.setOnAction(e -> setPlayRate(600));
+        rbSpeedUnbounded.setOnAction(e -> setPlayRate(SimulationScheduler.UNBOUNDED));
+
         buttonRandomMap.setDisable(true);
 
-        //Logic object
-        logic = new Logic(canvas.getWidth(), canvas.getHeight());
+        //Training engine and logic object
+        engine = new TrainingEngine(new Logic(canvas.getWidth(), canvas.getHeight()));
+        logic = engine.logic;
+        renderer = new MazeRenderer(canvas);
+        engine.setConvergenceMonitor(new ConvergenceMonitor(convergenceWindow));
+        engine.setWatchdog(watchdog);
 
         //Display map
         display();
 
-        //Set up game loop
-        double framesPerNanoSecond = framesPerSecond * 1000000000;
+        //Set up game loop, which only draws while the simulation runs on its own thread
+        long frameInterval = 1000000000L / framesPerSecond;
+        scheduler.publishInterval = frameInterval;
         gameLoopTimer = new AnimationTimer() {
             private long lastUpdate = 0;
 
             @Override
             public void handle(long now) {
-                if (now - lastUpdate >= framesPerNanoSecond) {
+                if (now - lastUpdate >= frameInterval) {
                     gameLoop();
                     lastUpdate = now;
                 }
@@ -115,6 +162,8 @@ public class Controller {
         currentMap = map;
         disableRandomMapButton();
         logic.setMap(map);
+        engine.monitor.reset();
+        renderer.invalidate();
         display();
     }
 
@@ -158,18 +207,56 @@ public class Controller {
             buttonReset.setDisable(true);
             buttonRandomMap.setDisable(true);
             disableRadioButtons(true);
+            stoppedBeforeTraining = watchdog.stoppedEpisodes();
+            trainingTask = new TrainingTask(engine, currentMap, trainingRounds, this::trainingProgress, Platform::runLater);
+            trainingTask.start();
         } else if (training == true) {
-            training = false;
-            trainingCount = 0;
-            labelTrained.setText("Training stopped");
-            buttonTrain.setText("Train agent");
-            buttonRun.setDisable(false);
-            buttonReset.setDisable(false);
-            disableRandomMapButton();
-            disableRadioButtons(false);
+            trainingTask.cancel();
+            buttonTrain.setDisable(true);
+            labelTrained.setText("Stopping training");
         }
     }
 
+    /**
+     * Shows the progress of the training, called on the FX thread with the latest progress
+     *
+     * @param progress The progress
+     */
+    void trainingProgress(TrainingTask.Progress progress) {
+        if (progress.done) {
+            trainingFinished(progress);
+            return;
+        }
+        if (engine.isCancelled()) return;
+        renderer.draw(progress.frame);
+        labelTrained.setText("Training: " + progress.rounds + " of " + progress.totalRounds + ", episode " + progress.episodes);
+        labelSteps.setText(String.format("Steps: %d (max Q change %.3f)", progress.lastEpisodeSteps, progress.maxDelta));
+    }
+
+    /**
+     * Shows the result of the training and enables the buttons again when the training is done or stopped
+     *
+     * @param progress The last progress of the training
+     */
+    void trainingFinished(TrainingTask.Progress progress) {
+        training = false;
+        trainingTask = null;
+        if (progress.error != null) labelTrained.setText("Training failed: " + progress.error);
+        else if (progress.cancelled) labelTrained.setText("Training stopped");
+        else if (progress.converged) labelTrained.setText("Agent converged after " + engine.monitor.convergedEpisode + " episodes");
+        else labelTrained.setText("Agent trained");
+        long stopped = watchdog.stoppedEpisodes() - stoppedBeforeTraining;
+        if (stopped > 0) labelTrained.setText(labelTrained.getText() + ", " + stopped + " episodes stopped at " + watchdog.maxSteps + " steps");
+        labelSteps.setText("Steps: " + progress.lastEpisodeSteps + (progress.lastEpisodeStopped ? " (last finished episode, the last episode was stopped)" : ""));
+        buttonTrain.setDisable(false);
+        buttonTrain.setText("Train agent");
+        buttonRun.setDisable(false);
+        buttonReset.setDisable(false);
+        disableRandomMapButton();
+        disableRadioButtons(false);
+        display();
+    }
+
     /**
      * Reset button resets everything back to start including all training done
      */
@@ -183,10 +270,37 @@ public class Controller {
         logic.initializeTables();
         running = false;
         training = false;
-        trainingCount = 0;
         changeMap(currentMap);
     }
 
+    /**
+     * Saves the training so it can be loaded again after the program is closed
+     */
+    public void buttonSave() {
+        if (training || running) return;
+        try {
+            Checkpoint.of(logic).write(savePath);
+            labelTrained.setText("Training saved");
+        } catch (IOException e) {
+            labelTrained.setText("Could not save: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the saved training
+     */
+    public void buttonLoad() {
+        if (training || running) return;
+        try {
+            engine.restore(Checkpoint.read(savePath));
+            engine.monitor.reset();
+            labelTrained.setText("Training loaded");
+        } catch (IOException | IllegalArgumentException e) {
+            labelTrained.setText("Could not load: " + e.getMessage());
+        }
+        display();
+    }
+
     /**
      * Generate new map by setting the map to current map which is random maps. This will generate a new map
      */
@@ -199,90 +313,58 @@ public class Controller {
      */
     public void buttonRun() {
         if (running) {
-            buttonRun.setText("Play");
-            running = false;
-            buttonTrain.setDisable(false);
-            buttonReset.setDisable(false);
-            disableRandomMapButton();
-            disableRadioButtons(false);
+            scheduler.stop();
         } else {
             buttonTrain.setDisable(true);
             buttonReset.setDisable(true);
             buttonRandomMap.setDisable(true);
             disableRadioButtons(true);
             buttonRun.setText("Stop");
+            policy = Policy.compile(logic);
             running = true;
+            scheduler.targetRate = playRate;
+            scheduler.start(() -> !logic.doPolicyAction(policy), () -> FrameSnapshot.of(logic), () -> Platform.runLater(this::runFinished));
         }
     }
 
     /**
-     * Called 60 frames per second either training or running on a map and displays the game
+     * Enables the buttons again when the agent reached the goal or was stopped
+     */
+    void runFinished() {
+        running = false;
+        buttonRun.setText("Play");
+        buttonTrain.setDisable(false);
+        buttonReset.setDisable(false);
+        disableRandomMapButton();
+        disableRadioButtons(false);
+        labelSteps.setText("Steps: " + logic.savedMoves);
+        display();
+    }
+
+    /**
+     * Sets how fast the agent plays, also while it is playing
+     *
+     * @param rate Steps per second or SimulationScheduler.UNBOUNDED
+     */
+    void setPlayRate(double rate) {
+        playRate = rate;
+        if (running) scheduler.targetRate = rate;
+    }
+
+    /**
+     * Called 60 frames per second and draws the latest snapshot of the agent playing if there is a new one. The training draws its own progress
      */
     void gameLoop() {
-        //If it's training
-        if (training == true && trainingCount < trainingRounds) {
-            labelTrained.setText("Training: " + trainingCount + " of " + trainingRounds);
-            logic.trainAgent(currentMap);
-            trainingCount++;
-        }
-        //If training finished
-        else if (training == true) {
-            training = false;
-            trainingCount = 0;
-            labelTrained.setText("Agent trained");
-            buttonTrain.setText("Train agent");
-            buttonRun.setDisable(false);
-            buttonReset.setDisable(false);
-            disableRandomMapButton();
-            disableRadioButtons(false);
-        }
-        //If it should run
-        if (running == true) {
-            boolean reachedGoal = logic.doAction(false);
-            labelSteps.setText("Steps: " + logic.savedMoves);
-            display();
-            if (reachedGoal) {
-                buttonTrain.setDisable(false);
-                buttonReset.setDisable(false);
-                disableRandomMapButton();
-                disableRadioButtons(false);
-                running = false;
-                buttonRun.setText("Play");
-            }
-        }
+        FrameSnapshot frame = scheduler.takeSnapshot();
+        if (frame == null) return;
+        renderer.draw(frame);
+        if (running) labelSteps.setText("Steps: " + frame.savedMoves + " (" + (long) scheduler.actualRate + " steps/sec)");
     }
 
     /**
      * Handles all display of the game
      */
     void display() {
-        //Display of the game objects
-        for (int i = 0; i < logic.columns; i++) {
-            for (int j = 0; j < logic.rows; j++) {
-                //Color of each game object
-                if (logic.map[i][j] == 0) canvas.getGraphicsContext2D().setFill(Color.WHITE);
-                else if (logic.map[i][j] == 1) canvas.getGraphicsContext2D().setFill(Color.GRAY);
-                else if (logic.map[i][j] == 2) canvas.getGraphicsContext2D().setFill(Color.GREEN);
-                else if (logic.map[i][j] == 3) canvas.getGraphicsContext2D().setFill(Color.BLUE);
-                canvas.getGraphicsContext2D().fillRect(logic.cellSize * i, logic.cellSize * j, logic.cellSize, logic.cellSize);
-                //Borders around game objects
-                canvas.getGraphicsContext2D().setStroke(Color.BLACK);
-                canvas.getGraphicsContext2D().strokeRect(logic.cellSize * i, logic.cellSize * j, logic.cellSize, logic.cellSize);
-            }
-        }
-        //Vision for the agent
-        canvas.getGraphicsContext2D().setStroke(Color.RED);
-        canvas.getGraphicsContext2D().strokeRect(logic.cellSize * logic.agentX - logic.cellSize, logic.cellSize * logic.agentY - logic.cellSize, logic.cellSize * 3, logic.cellSize * 3);
-
-        //Q-values for each action in the state
-        canvas.getGraphicsContext2D().setFill(Color.BLACK);
-        int state = logic.findStateId();
-        double centerOfAgentX = logic.cellSize * logic.agentX + logic.cellSize / 2;
-        double centerOfAgentY = logic.cellSize * logic.agentY + logic.cellSize / 2;
-        canvas.getGraphicsContext2D().fillText("" + logic.Q[state][0], centerOfAgentX, centerOfAgentY - logic.cellSize);
-        canvas.getGraphicsContext2D().fillText("" + logic.Q[state][1], centerOfAgentX - logic.cellSize, centerOfAgentY);
-        canvas.getGraphicsContext2D().fillText("" + logic.Q[state][2], centerOfAgentX + logic.cellSize, centerOfAgentY);
-        canvas.getGraphicsContext2D().fillText("" + logic.Q[state][3], centerOfAgentX, centerOfAgentY + logic.cellSize);
-
+        renderer.draw(FrameSnapshot.of(logic));
     }
 }
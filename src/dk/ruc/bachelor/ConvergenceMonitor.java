@@ -0,0 +1,99 @@
+package dk.ruc.bachelor;
+
+/**
+ * Finds when training no longer changes anything, so it can be stopped early. An episode is stable if it did not change the greedy action of any state, its biggest Q-value change is within the tolerance and its steps to goal are close to the other episodes of the stable run. The training has converged when a whole window of episodes in a row is stable. The episodes may be recorded by several threads training the same tables, then an episode of any thread that changes the policy starts the window over
+ */
+class ConvergenceMonitor {
+
+    //Number of stable episodes in a row needed to converge
+    int window;
+
+    //The biggest change of a Q-value in a stable episode. States that look the same from different fields keep moving their values forever, so by default any change is accepted and only the greedy actions count
+    double deltaTolerance = Double.MAX_VALUE;
+
+    //How much the steps to goal may vary in a stable run, relative to the shortest episode of the run
+    double stepsTolerance = 0.1;
+
+    //Episodes recorded and the length of the current stable run
+    long episodes;
+    int stableEpisodes;
+
+    //Shortest and longest episode of the current stable run
+    int minSteps, maxSteps;
+
+    //The biggest Q-value change of the last episode
+    double lastMaxDelta;
+
+    //The episode the training converged at, or -1. It is read by other training threads to know when to stop
+    volatile long convergedEpisode = -1;
+
+    /**
+     * Constructor sets the window
+     *
+     * @param windowInput Number of stable episodes in a row needed to converge
+     */
+    ConvergenceMonitor(int windowInput) {
+        if (windowInput < 1) throw new IllegalArgumentException("The convergence window must be at least 1 episode");
+        window = windowInput;
+    }
+
+    /**
+     * Records a finished episode
+     *
+     * @param policyChanges Number of times the episode changed the greedy action of a state
+     * @param maxDelta      The biggest change of a Q-value in the episode
+     * @param steps         Steps the episode took
+     * @return Returns true if the training has converged
+     */
+    synchronized boolean record(int policyChanges, double maxDelta, int steps) {
+        episodes++;
+        lastMaxDelta = maxDelta;
+        if (converged()) return true;
+
+        if (policyChanges > 0 || maxDelta > deltaTolerance) {
+            stableEpisodes = 0;
+            return false;
+        }
+        //Start a new run if the steps are too far from the run so far
+        if (stableEpisodes == 0 || Math.max(maxSteps, steps) > (1 + stepsTolerance) * Math.min(minSteps, steps)) {
+            stableEpisodes = 0;
+            minSteps = steps;
+            maxSteps = steps;
+        }
+        minSteps = Math.min(minSteps, steps);
+        maxSteps = Math.max(maxSteps, steps);
+        stableEpisodes++;
+        if (stableEpisodes >= window) convergedEpisode = episodes;
+        return converged();
+    }
+
+    /**
+     * Records an episode that was stopped by the watchdog. It did not reach the goal, so it ends the stable run instead of being counted in it
+     *
+     * @return Returns true if the training has converged
+     */
+    synchronized boolean recordStopped() {
+        episodes++;
+        if (converged()) return true;
+        stableEpisodes = 0;
+        return false;
+    }
+
+    /**
+     * Finds if the training has converged
+     *
+     * @return Returns true if a whole window of episodes has been stable
+     */
+    boolean converged() {
+        return convergedEpisode >= 0;
+    }
+
+    /**
+     * Forgets all episodes, e.g. when the tables are reset or the map changes
+     */
+    synchronized void reset() {
+        episodes = 0;
+        stableEpisodes = 0;
+        convergedEpisode = -1;
+    }
+}
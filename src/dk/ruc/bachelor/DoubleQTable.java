@@ -0,0 +1,72 @@
+package dk.ruc.bachelor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Q-table storing the values as doubles
+ */
+class DoubleQTable extends QTable {
+
+    //The values of the table
+    double[] values;
+
+    //Used to update a value atomically when the table is shared
+    static final VarHandle VALUE = MethodHandles.arrayElementVarHandle(double[].class);
+
+    /**
+     * Constructor allocates the values
+     *
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     */
+    DoubleQTable(int numberOfStates, int numberOfActions) {
+        super(numberOfStates, numberOfActions, Precision.DOUBLE, Storage.HEAP);
+        values = new double[numberOfStates * numberOfActions];
+    }
+
+    @Override
+    double get(long state, int action) {
+        return values[index(state, action)];
+    }
+
+    @Override
+    void set(long state, int action, double value) {
+        values[index(state, action)] = value;
+    }
+
+    @Override
+    double update(long state, int action, double target, double alpha) {
+        int index = index(state, action);
+        if (shared) {
+            //Retry until no other thread changed the value between reading and writing it
+            double oldValue, newValue;
+            do {
+                oldValue = (double) VALUE.getVolatile(values, index);
+                newValue = (1 - alpha) * oldValue + alpha * target;
+            } while (!VALUE.compareAndSet(values, index, oldValue, newValue));
+            return newValue - oldValue;
+        }
+        double oldValue = values[index];
+        values[index] = ((1 - alpha) * oldValue + alpha * target);
+        return values[index] - oldValue;
+    }
+
+    @Override
+    QTable copy() {
+        DoubleQTable copy = new DoubleQTable((int) numberOfStates, numberOfActions);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        return copy;
+    }
+
+    @Override
+    long memoryUsage() {
+        return (long) values.length * Double.BYTES;
+    }
+
+    @Override
+    void fill(double value) {
+        Arrays.fill(values, value);
+    }
+}
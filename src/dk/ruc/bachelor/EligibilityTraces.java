@@ -0,0 +1,99 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+
+/**
+ * Eligibility traces for Watkins's Q(lambda). Every update also moves the state-action pairs the agent took before, weighted by how recently they were taken, so the reward spreads back along the whole path in one episode instead of one step per episode. A trace is multiplied by gamma * lambda every step and dropped when it falls below the threshold, so only the recent path is stored, as parallel arrays of primitives, and not a trace for every state and action. The traces are cut when the agent takes an action that is not greedy, because the path after it says nothing about the greedy policy. The updates of the traces count in the biggest Q-value change and the policy changes of the episode like the update of the last step, so an episode is only stable when the whole path has settled
+ */
+class EligibilityTraces {
+
+    //How slowly the traces fade, 0 is plain Q-learning
+    double lambda;
+
+    //Traces below this are dropped
+    double threshold = 0.01;
+
+    //The state-action pairs on the recent path, the valid actions of their states and their traces
+    long[] states = new long[64];
+    byte[] actions = new byte[64];
+    byte[] validActions = new byte[64];
+    double[] traces = new double[64];
+    int size;
+
+    //The most pairs held at once, which shows how long the recent path is
+    int maxSize;
+
+    /**
+     * Constructor sets how slowly the traces fade
+     *
+     * @param lambdaInput Between 0 and 1, how much of a trace is kept each step on top of gamma
+     */
+    EligibilityTraces(double lambdaInput) {
+        if (lambdaInput < 0 || lambdaInput > 1) throw new IllegalArgumentException("Lambda must be between 0 and 1");
+        lambda = lambdaInput;
+    }
+
+    /**
+     * Moves the earlier pairs on the path by the temporal difference error of the last step, lets the traces fade and adds the pair of the last step. The pair of the last step itself is updated by the caller like in plain Q-learning. A pair that is already on the path gets its trace replaced. Each change is counted in the maxDelta of the logic, and in its policyChanges if it changes the greedy action of the pair's state
+     *
+     * @param logic        The logic whose Q-table is updated
+     * @param state        The state of the last step
+     * @param action       The action of the last step
+     * @param validActions Bit mask of the actions that do not walk into a wall from the state of the last step
+     * @param error        The temporal difference error of the last step
+     */
+    void backup(Logic logic, long state, int action, int validActions, double error) {
+        QTable Q = logic.Q;
+        double decay = logic.gamma * lambda;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (states[i] == state && actions[i] == action) continue;
+            double trace = traces[i];
+            //Moving towards Q + error * trace with alpha adds alpha * error * trace, truncated like any other update
+            double delta = Q.update(states[i], actions[i], Q.get(states[i], actions[i]) + error * trace, logic.alpha);
+            if (delta != 0) {
+                logic.maxDelta = Math.max(logic.maxDelta, Math.abs(delta));
+                if (logic.trackPolicy && logic.greedyChanged(states[i], actions[i], this.validActions[i], delta)) logic.policyChanges++;
+            }
+            trace *= decay;
+            if (trace < threshold) continue;
+            states[kept] = states[i];
+            actions[kept] = actions[i];
+            this.validActions[kept] = this.validActions[i];
+            traces[kept] = trace;
+            kept++;
+        }
+        size = kept;
+        if (decay >= threshold) add(state, action, validActions, decay);
+    }
+
+    /**
+     * Adds a pair to the path, growing the arrays if they are full
+     *
+     * @param state        The state
+     * @param action       The action
+     * @param validActions Bit mask of the actions that do not walk into a wall from the state
+     * @param trace        The trace of the pair
+     */
+    void add(long state, int action, int validActions, double trace) {
+        if (size == states.length) {
+            states = Arrays.copyOf(states, size * 2);
+            actions = Arrays.copyOf(actions, size * 2);
+            this.validActions = Arrays.copyOf(this.validActions, size * 2);
+            traces = Arrays.copyOf(traces, size * 2);
+        }
+        states[size] = state;
+        actions[size] = (byte) action;
+        this.validActions[size] = (byte) validActions;
+        traces[size] = trace;
+        size++;
+        maxSize = Math.max(maxSize, size);
+    }
+
+    /**
+     * Removes all traces, e.g. after a random action or when an episode ends
+     */
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package dk.ruc.bachelor;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops runaway episodes. When the greedy policy walks in circles, e.g. because a stale positive Q-value keeps pulling the agent back, an episode can take millions of steps. The watchdog gives every episode a budget of steps and a limit on how many times it may visit the same field, and an episode that goes over either is stopped and reported. The visits are counted by the logic, the watchdog only holds the limits and counts the reports, so one watchdog can be shared by many logics on different threads
+ */
+class EpisodeWatchdog {
+
+    /**
+     * Why an episode was stopped
+     */
+    enum Reason {STEP_LIMIT, REVISITS}
+
+    //Steps an episode may take and times it may visit one field, 0 turns the limit off
+    int maxSteps;
+    int maxVisits;
+
+    //Number of episodes stopped for each reason
+    LongAdder stepLimitEpisodes = new LongAdder();
+    LongAdder revisitEpisodes = new LongAdder();
+
+    //Where stopped episodes are reported if it is set, and how many are reported before they are only counted
+    PrintStream log;
+    int maxReports = 10;
+    AtomicInteger reports = new AtomicInteger();
+
+    /**
+     * Constructor sets the limits
+     *
+     * @param maxStepsInput  Steps an episode may take, or 0 for no limit
+     * @param maxVisitsInput Times an episode may visit one field, or 0 for no limit
+     */
+    EpisodeWatchdog(int maxStepsInput, int maxVisitsInput) {
+        if (maxStepsInput < 0 || maxVisitsInput < 0) throw new IllegalArgumentException("The limits of an episode can not be negative");
+        maxSteps = maxStepsInput;
+        maxVisits = maxVisitsInput;
+    }
+
+    /**
+     * Counts and reports an episode that was stopped
+     *
+     * @param reason Why the episode was stopped
+     * @param steps  Steps the episode took
+     * @param x      X coordinate of the agent when it was stopped
+     * @param y      Y coordinate of the agent when it was stopped
+     */
+    void report(Reason reason, int steps, int x, int y) {
+        if (reason == Reason.STEP_LIMIT) stepLimitEpisodes.increment();
+        else revisitEpisodes.increment();
+        if (log == null) return;
+        int report = reports.incrementAndGet();
+        if (report <= maxReports) log.println("Episode stopped after " + steps + " steps at (" + x + ", " + y + "): " + (reason == Reason.STEP_LIMIT ? "step limit reached" : "field visited more than " + maxVisits + " times"));
+        if (report == maxReports) log.println("Further stopped episodes are only counted");
+    }
+
+    /**
+     * Finds the number of episodes stopped
+     *
+     * @return Returns the episodes stopped for any reason
+     */
+    long stoppedEpisodes() {
+        return stepLimitEpisodes.sum() + revisitEpisodes.sum();
+    }
+}
@@ -0,0 +1,51 @@
+package dk.ruc.bachelor;
+
+/**
+ * Takes a random valid action with probability epsilon and otherwise the greedy action. Epsilon is multiplied by the decay after every episode until it reaches the minimum, so the agent explores much at first and less as it learns
+ */
+class EpsilonGreedyExploration implements ExplorationStrategy {
+
+    //The settings the strategy was created with
+    double initialEpsilon, decay, minEpsilon;
+
+    //The current probability of a random action
+    double epsilon;
+
+    /**
+     * Constructor sets the probability of a random action and how it decays
+     *
+     * @param epsilonInput    Probability of a random action at the start
+     * @param decayInput      Factor epsilon is multiplied by after each episode, 1 keeps it constant
+     * @param minEpsilonInput The lowest epsilon
+     */
+    EpsilonGreedyExploration(double epsilonInput, double decayInput, double minEpsilonInput) {
+        if (epsilonInput < 0 || epsilonInput > 1) throw new IllegalArgumentException("Epsilon must be between 0 and 1");
+        if (decayInput <= 0 || decayInput > 1) throw new IllegalArgumentException("The decay must be above 0 and at most 1");
+        if (minEpsilonInput < 0 || minEpsilonInput > epsilonInput) throw new IllegalArgumentException("The minimum epsilon must be between 0 and the starting epsilon");
+        initialEpsilon = epsilonInput;
+        decay = decayInput;
+        minEpsilon = minEpsilonInput;
+        epsilon = epsilonInput;
+    }
+
+    @Override
+    public int decide(Logic logic, int validActions) {
+        if (logic.random.nextDouble() < epsilon) return logic.randomAction(validActions);
+        return ExplorationStrategy.greedy(logic, validActions);
+    }
+
+    @Override
+    public void episodeFinished() {
+        epsilon = Math.max(minEpsilon, epsilon * decay);
+    }
+
+    @Override
+    public void reset() {
+        epsilon = initialEpsilon;
+    }
+
+    @Override
+    public ExplorationStrategy copy() {
+        return new EpsilonGreedyExploration(initialEpsilon, decay, minEpsilon);
+    }
+}
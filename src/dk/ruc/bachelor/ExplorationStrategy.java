@@ -0,0 +1,93 @@
+package dk.ruc.bachelor;
+
+/**
+ * Decides which action the agent takes while it trains. A strategy only picks among the valid actions of the state, which are found once per field when the map is set, so no strategy has to retry actions that walk into a wall. A strategy can keep its own values, e.g. an epsilon that decays, so each logic gets its own strategy
+ */
+interface ExplorationStrategy {
+
+    /**
+     * Decides the action in the current state of a logic
+     *
+     * @param logic        The logic, which has the tables, the state and the random object
+     * @param validActions Bit mask with a bit set for each valid action
+     * @return Returns the action
+     */
+    int decide(Logic logic, int validActions);
+
+    /**
+     * Called when an episode ends, e.g. to let the exploration decay
+     */
+    default void episodeFinished() {
+    }
+
+    /**
+     * Called when the tables are initialized, so values learned with the old tables are forgotten
+     */
+    default void reset() {
+    }
+
+    /**
+     * Creates a strategy with the same settings and no learned values, e.g. for another worker
+     *
+     * @return Returns the new strategy
+     */
+    ExplorationStrategy copy();
+
+    /**
+     * Finds the value of an action, which is its reward plus its Q-value
+     *
+     * @param logic  The logic
+     * @param state  The state
+     * @param action The action
+     * @return Returns the value
+     */
+    static double value(Logic logic, long state, int action) {
+        return logic.R.get(state, action) + logic.Q.get(state, action);
+    }
+
+    /**
+     * Picks the best valid action. A random valid action is taken unless another valid action has a greater value, which is how the agent has always decided
+     *
+     * @param logic        The logic
+     * @param validActions Bit mask with a bit set for each valid action
+     * @return Returns the action
+     */
+    static int greedy(Logic logic, int validActions) {
+        int bestAction = logic.randomAction(validActions);
+        double bestValue = value(logic, logic.state, bestAction);
+        for (int i = 0; i < logic.numberOfActions; i++) {
+            double value = value(logic, logic.state, i);
+            if (value > bestValue && (validActions >> i & 1) != 0) {
+                bestAction = i;
+                bestValue = value;
+            }
+        }
+        return bestAction;
+    }
+
+    /**
+     * Creates a strategy from a description, e.g. from the command line
+     *
+     * @param description greedy, epsilon:e[:decay[:min]], boltzmann:temperature[:decay[:min]] or ucb:c
+     * @return Returns the strategy
+     */
+    static ExplorationStrategy parse(String description) {
+        String[] parts = description.toLowerCase().split(":");
+        double[] values = new double[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) values[i - 1] = Double.parseDouble(parts[i]);
+        switch (parts[0]) {
+            case "greedy":
+                return new GreedyExploration();
+            case "epsilon":
+                if (values.length < 1) throw new IllegalArgumentException("Epsilon greedy needs an epsilon, e.g. epsilon:0.1");
+                return new EpsilonGreedyExploration(values[0], values.length > 1 ? values[1] : 1, values.length > 2 ? values[2] : 0);
+            case "boltzmann":
+                if (values.length < 1) throw new IllegalArgumentException("Boltzmann needs a temperature, e.g. boltzmann:1000");
+                return new BoltzmannExploration(values[0], values.length > 1 ? values[1] : 1, values.length > 2 ? values[2] : 0);
+            case "ucb":
+                return new UcbExploration(values.length > 0 ? values[0] : Math.sqrt(2));
+            default:
+                throw new IllegalArgumentException("Unknown exploration " + parts[0]);
+        }
+    }
+}
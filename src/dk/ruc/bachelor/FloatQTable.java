@@ -0,0 +1,72 @@
+package dk.ruc.bachelor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Q-table storing the values as floats
+ */
+class FloatQTable extends QTable {
+
+    //The values of the table
+    float[] values;
+
+    //Used to update a value atomically when the table is shared
+    static final VarHandle VALUE = MethodHandles.arrayElementVarHandle(float[].class);
+
+    /**
+     * Constructor allocates the values
+     *
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     */
+    FloatQTable(int numberOfStates, int numberOfActions) {
+        super(numberOfStates, numberOfActions, Precision.FLOAT, Storage.HEAP);
+        values = new float[numberOfStates * numberOfActions];
+    }
+
+    @Override
+    double get(long state, int action) {
+        return values[index(state, action)];
+    }
+
+    @Override
+    void set(long state, int action, double value) {
+        values[index(state, action)] = (float) value;
+    }
+
+    @Override
+    double update(long state, int action, double target, double alpha) {
+        int index = index(state, action);
+        if (shared) {
+            //Retry until no other thread changed the value between reading and writing it
+            float oldValue, newValue;
+            do {
+                oldValue = (float) VALUE.getVolatile(values, index);
+                newValue = (float) ((1 - alpha) * oldValue + alpha * target);
+            } while (!VALUE.compareAndSet(values, index, oldValue, newValue));
+            return newValue - oldValue;
+        }
+        float oldValue = values[index];
+        values[index] = (float) ((1 - alpha) * oldValue + alpha * target);
+        return values[index] - oldValue;
+    }
+
+    @Override
+    QTable copy() {
+        FloatQTable copy = new FloatQTable((int) numberOfStates, numberOfActions);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        return copy;
+    }
+
+    @Override
+    long memoryUsage() {
+        return (long) values.length * Float.BYTES;
+    }
+
+    @Override
+    void fill(double value) {
+        Arrays.fill(values, (float) value);
+    }
+}
@@ -0,0 +1,115 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Checks if a field of a map can be reached from another by filling the map breadth first from the start, and finds the distance to the goal from every field by filling from the goal. The map is never changed, the filled fields are marked in a bit set that is reused between fills together with the queue. The queue is a ring that only grows to the size of the front of the fill, so big maps only cost the bit set
+ */
+class FloodFill {
+
+    //The fields that have been reached, stored as x * rows + y
+    BitSet visited = new BitSet();
+
+    //Ring of fields waiting to be filled from, stored as x * rows + y. The length is always a power of 2
+    int[] queue = new int[64];
+    int head, size;
+
+    /**
+     * Checks if the goal can be reached from a field without walking through walls
+     *
+     * @param map    The map to check on
+     * @param startX X coordinate to check from
+     * @param startY Y coordinate to check from
+     * @return Returns true if the goal can be reached and false if not
+     */
+    boolean reachesGoal(Grid map, int startX, int startY) {
+        int rows = map.rows;
+        visited.clear();
+        head = 0;
+        size = 0;
+        add(startX * rows + startY);
+        visited.set(startX * rows + startY);
+        while (size > 0) {
+            int field = remove();
+            int x = field / rows;
+            int y = field % rows;
+            for (int action = 0; action < Logic.DX.length; action++) {
+                int nextX = x + Logic.DX[action];
+                int nextY = y + Logic.DY[action];
+                if (!map.contains(nextX, nextY)) continue;
+                int next = nextX * rows + nextY;
+                int value = map.get(nextX, nextY);
+                if (value == 1 || visited.get(next)) continue;
+                if (value == 2) return true;
+                visited.set(next);
+                add(next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the fewest steps to the goal from every field by filling the map from all goals at once
+     *
+     * @param map The map
+     * @return Returns the steps to the goal from each field stored as x * rows + y, 0 on goals and -1 on walls and fields that can not reach a goal
+     */
+    int[] distances(Grid map) {
+        int rows = map.rows;
+        int[] distances = new int[map.columns * rows];
+        Arrays.fill(distances, -1);
+        head = 0;
+        size = 0;
+        for (int x = 0; x < map.columns; x++) {
+            for (int y = 0; y < rows; y++) {
+                if (map.get(x, y) != 2) continue;
+                distances[x * rows + y] = 0;
+                add(x * rows + y);
+            }
+        }
+        while (size > 0) {
+            int field = remove();
+            int x = field / rows;
+            int y = field % rows;
+            for (int action = 0; action < Logic.DX.length; action++) {
+                int nextX = x + Logic.DX[action];
+                int nextY = y + Logic.DY[action];
+                if (!map.contains(nextX, nextY)) continue;
+                int next = nextX * rows + nextY;
+                if (distances[next] >= 0 || map.get(nextX, nextY) == 1) continue;
+                distances[next] = distances[field] + 1;
+                add(next);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Adds a field to the back of the queue, doubling the ring if it is full
+     *
+     * @param field The field
+     */
+    void add(int field) {
+        if (size == queue.length) {
+            int[] bigger = new int[queue.length * 2];
+            for (int i = 0; i < size; i++) bigger[i] = queue[(head + i) & (queue.length - 1)];
+            queue = bigger;
+            head = 0;
+        }
+        queue[(head + size) & (queue.length - 1)] = field;
+        size++;
+    }
+
+    /**
+     * Removes the field at the front of the queue
+     *
+     * @return Returns the field
+     */
+    int remove() {
+        int field = queue[head];
+        head = (head + 1) & (queue.length - 1);
+        size--;
+        return field;
+    }
+}
@@ -0,0 +1,43 @@
+package dk.ruc.bachelor;
+
+/**
+ * What is drawn in one frame, copied from the logic on the thread running the simulation. The FX thread only draws snapshots, so it never reads the logic while it changes. The map is not copied because it does not change while the simulation runs
+ */
+class FrameSnapshot {
+
+    //The map and its size on the canvas
+    Grid map;
+    int columns, rows;
+    double cellSize;
+
+    //The agent and what it sees
+    int agentX, agentY;
+    int visionRange;
+
+    //The Q-values of the state of the agent, formatted for display
+    String[] qValues = new String[4];
+
+    //Steps taken in the current or last episode
+    int savedMoves;
+
+    /**
+     * Copies what is drawn from a logic
+     *
+     * @param logic The logic
+     * @return Returns the snapshot
+     */
+    static FrameSnapshot of(Logic logic) {
+        FrameSnapshot snapshot = new FrameSnapshot();
+        snapshot.map = logic.map;
+        snapshot.columns = logic.columns;
+        snapshot.rows = logic.rows;
+        snapshot.cellSize = logic.cellSize;
+        snapshot.agentX = logic.agentX;
+        snapshot.agentY = logic.agentY;
+        snapshot.visionRange = logic.visionRange;
+        long state = logic.findStateId();
+        for (int action = 0; action < snapshot.qValues.length; action++) snapshot.qValues[action] = logic.Q.format(state, action);
+        snapshot.savedMoves = logic.savedMoves;
+        return snapshot;
+    }
+}
@@ -0,0 +1,17 @@
+package dk.ruc.bachelor;
+
+/**
+ * The original way the agent decides: the action with the greatest value, and a random valid action when no action is greater than it. The agent only explores through ties, so it stops exploring a state as soon as one of its values is positive
+ */
+class GreedyExploration implements ExplorationStrategy {
+
+    @Override
+    public int decide(Logic logic, int validActions) {
+        return ExplorationStrategy.greedy(logic, validActions);
+    }
+
+    @Override
+    public ExplorationStrategy copy() {
+        return new GreedyExploration();
+    }
+}
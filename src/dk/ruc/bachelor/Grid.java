@@ -0,0 +1,107 @@
+package dk.ruc.bachelor;
+
+/**
+ * A rectangular map where every field is stored in 2 bits, 32 fields to a long. A field is 0 for empty, 1 for a wall and 2 for the goal. The agent is not stored in the grid
+ */
+class Grid {
+
+    //Size of the grid
+    int columns, rows;
+
+    //The fields stored column by column
+    long[] words;
+
+    //The biggest number of fields a grid can have
+    static final long MAX_FIELDS = 10000L * 10000L;
+
+    /**
+     * Constructor creates a grid with only empty fields
+     *
+     * @param columnsInput Number of columns
+     * @param rowsInput    Number of rows
+     */
+    Grid(int columnsInput, int rowsInput) {
+        if (columnsInput < 3 || rowsInput < 3) throw new IllegalArgumentException("A grid must be at least 3x3");
+        if ((long) columnsInput * rowsInput > MAX_FIELDS) throw new IllegalArgumentException("A grid can have at most " + MAX_FIELDS + " fields");
+        columns = columnsInput;
+        rows = rowsInput;
+        words = new long[(columns * rows + 31) / 32];
+    }
+
+    /**
+     * Creates a grid from a 2D array. Agents in the array are made empty fields
+     *
+     * @param map The map as a 2D array indexed by x and then y
+     * @return Returns the grid
+     */
+    static Grid of(int[][] map) {
+        Grid grid = new Grid(map.length, map[0].length);
+        for (int x = 0; x < grid.columns; x++) {
+            for (int y = 0; y < grid.rows; y++) {
+                if (map[x][y] != 3) grid.set(x, y, map[x][y]);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Gets a field
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     * @return Returns the value of the field
+     */
+    int get(int x, int y) {
+        int index = x * rows + y;
+        return (int) (words[index >>> 5] >>> ((index & 31) << 1)) & 3;
+    }
+
+    /**
+     * Sets a field
+     *
+     * @param x     X coordinate of the field
+     * @param y     Y coordinate of the field
+     * @param value The new value of the field
+     */
+    void set(int x, int y, int value) {
+        int index = x * rows + y;
+        int shift = (index & 31) << 1;
+        words[index >>> 5] = words[index >>> 5] & ~(3L << shift) | (long) value << shift;
+    }
+
+    /**
+     * Checks if a position is inside the grid
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Returns true if the position is a field of the grid
+     */
+    boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < columns && y < rows;
+    }
+
+    /**
+     * Computes a 64 bit fingerprint of the size and fields, so equal grids can be found without comparing every field
+     *
+     * @return Returns the fingerprint
+     */
+    long fingerprint() {
+        long hash = (long) columns << 32 | rows;
+        for (long word : words) {
+            hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * Copies the grid
+     *
+     * @return Returns a new grid with the same fields
+     */
+    Grid copy() {
+        Grid copy = new Grid(columns, rows);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+}
@@ -0,0 +1,293 @@
+package dk.ruc.bachelor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Entry point for training an agent from the command line without the GUI, e.g. on machines without a display
+ */
+public class HeadlessMain {
+
+    //Steps before an evaluation episode is given up
+    static final int EVALUATION_STEPS = 100000;
+
+    public static void main(String[] args) {
+        int map = 0;
+        long episodes = 1000;
+        double alpha = 0.8;
+        double gamma = 0.8;
+        Long seed = null;
+        int threads = 1;
+        QTable.Precision precision = QTable.Precision.INT;
+        QTable.Storage storage = QTable.Storage.HEAP;
+        int visionRange = 1;
+        Rng.Kind rng = Rng.Kind.SPLITTABLE;
+        int columns = 15;
+        int rows = 15;
+        int walls = -1;
+        boolean solvableByConstruction = false;
+        Path loadPath = null;
+        Path savePath = null;
+        long checkpointEvery = 0;
+        String metricsPath = null;
+        long metricsInterval = 1000;
+        int convergenceWindow = 0;
+        int evaluations = 0;
+        int replayCapacity = 0;
+        int replayBatch = 4;
+        ExplorationStrategy exploration = new GreedyExploration();
+        double lambda = -1;
+        Planner.Mode planning = null;
+        int planningSteps = 10;
+        int maxSteps = 0;
+        int maxVisits = 0;
+
+        //Read the options, each option is followed by its value
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) usage("Missing value for " + args[i]);
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--map":
+                        map = Integer.parseInt(value);
+                        break;
+                    case "--episodes":
+                        episodes = Long.parseLong(value);
+                        break;
+                    case "--alpha":
+                        alpha = Double.parseDouble(value);
+                        break;
+                    case "--gamma":
+                        gamma = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--storage":
+                        storage = QTable.Storage.valueOf(value.toUpperCase().replace('-', '_'));
+                        break;
+                    case "--precision":
+                        precision = QTable.Precision.valueOf(value.toUpperCase());
+                        break;
+                    case "--rng":
+                        rng = Rng.Kind.valueOf(value.toUpperCase());
+                        break;
+                    case "--size":
+                        String[] size = value.split("x");
+                        if (size.length != 2) throw new IllegalArgumentException("The size must be written as columns x rows, e.g. 100x100");
+                        columns = Integer.parseInt(size[0]);
+                        rows = Integer.parseInt(size[1]);
+                        break;
+                    case "--walls":
+                        walls = Integer.parseInt(value);
+                        break;
+                    case "--solvable-by-construction":
+                        if (!value.equals("true") && !value.equals("false")) throw new IllegalArgumentException();
+                        solvableByConstruction = Boolean.parseBoolean(value);
+                        break;
+                    case "--vision":
+                        visionRange = Integer.parseInt(value);
+                        break;
+                    case "--load":
+                        loadPath = Paths.get(value);
+                        break;
+                    case "--save":
+                        savePath = Paths.get(value);
+                        break;
+                    case "--checkpoint-every":
+                        checkpointEvery = Long.parseLong(value);
+                        break;
+                    case "--metrics":
+                        metricsPath = value;
+                        break;
+                    case "--metrics-interval":
+                        metricsInterval = Long.parseLong(value);
+                        break;
+                    case "--converge":
+                        convergenceWindow = Integer.parseInt(value);
+                        break;
+                    case "--evaluate":
+                        evaluations = Integer.parseInt(value);
+                        break;
+                    case "--replay":
+                        replayCapacity = Integer.parseInt(value);
+                        break;
+                    case "--replay-batch":
+                        replayBatch = Integer.parseInt(value);
+                        break;
+                    case "--planning":
+                        planning = Planner.Mode.valueOf(value.toUpperCase());
+                        break;
+                    case "--planning-steps":
+                        planningSteps = Integer.parseInt(value);
+                        break;
+                    case "--lambda":
+                        lambda = Double.parseDouble(value);
+                        if (lambda < 0 || lambda > 1) throw new IllegalArgumentException();
+                        break;
+                    case "--exploration":
+                        exploration = ExplorationStrategy.parse(value);
+                        break;
+                    case "--max-steps":
+                        maxSteps = Integer.parseInt(value);
+                        break;
+                    case "--max-visits":
+                        maxVisits = Integer.parseInt(value);
+                        break;
+                    default:
+                        usage("Unknown option " + args[i]);
+                }
+            } catch (IllegalArgumentException e) {
+                usage("Invalid value for " + args[i] + ": " + value);
+            }
+        }
+        if (map < 0 || map > 8) usage("The map must be between 0 and 8");
+        if (threads < 1) usage("The number of threads must be at least 1");
+        if (checkpointEvery < 0) usage("The number of episodes between checkpoints can not be negative");
+        if (evaluations < 0) usage("The number of evaluations can not be negative");
+        if (replayCapacity < 0 || replayBatch < 0) usage("The replay capacity and batch can not be negative");
+        if (maxSteps < 0 || maxVisits < 0) usage("The limits of an episode can not be negative");
+        if (planningSteps < 0) usage("The number of planning steps can not be negative");
+        if (convergenceWindow < 0) usage("The convergence window can not be negative");
+        if (metricsInterval < 1) usage("The metrics interval must be at least 1 ms");
+        if (checkpointEvery > 0 && savePath == null) usage("--checkpoint-every needs a file to save to with --save");
+
+        TrainingEngine engine = threads > 1 ? new ParallelTrainer(threads) : new TrainingEngine(new Logic());
+        try {
+            engine.setRandomMapSize(columns, rows, walls < 0 ? Logic.defaultWalls(columns, rows) : walls);
+            engine.setSolvableByConstruction(solvableByConstruction);
+            engine.configureTables(precision, storage, visionRange);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        }
+        engine.setParameters(alpha, gamma);
+        engine.setReplay(replayCapacity, replayBatch);
+        engine.setExploration(exploration);
+        engine.setLambda(lambda);
+        engine.setPlanning(planning, planningSteps);
+        if (maxSteps > 0 || maxVisits > 0) {
+            EpisodeWatchdog watchdog = new EpisodeWatchdog(maxSteps, maxVisits);
+            watchdog.log = System.err;
+            engine.setWatchdog(watchdog);
+        }
+        if (seed != null) engine.setRandom(Rng.create(rng, seed));
+
+        //A loaded checkpoint replaces the tables and continues with the values they were trained with
+        try {
+            if (loadPath != null) engine.restore(Checkpoint.read(loadPath));
+        } catch (IOException | IllegalArgumentException e) {
+            usage("Could not load " + loadPath + ": " + e.getMessage());
+        }
+        if (convergenceWindow > 0) engine.setConvergenceMonitor(new ConvergenceMonitor(convergenceWindow));
+        if (checkpointEvery > 0) {
+            engine.checkpointWriter = new CheckpointWriter(savePath);
+            engine.checkpointEvery = checkpointEvery;
+        }
+
+        //Metrics are written as JSON lines to a file, or to the standard output if the file is -
+        MetricsReporter reporter = null;
+        if (metricsPath != null) {
+            Metrics metrics = new Metrics(engine.logic.numberOfStates);
+            engine.setMetrics(metrics);
+            try {
+                reporter = new MetricsReporter(metrics, metricsPath.equals("-") ? System.out : new PrintStream(metricsPath), metricsInterval);
+            } catch (FileNotFoundException e) {
+                usage("Could not write " + metricsPath + ": " + e.getMessage());
+            }
+        }
+
+        //The reporter is closed even if the training fails, so the metrics file gets its last line and is not left open
+        try {
+            engine.train(map, episodes);
+        } finally {
+            if (reporter != null) reporter.close();
+        }
+
+        try {
+            if (engine.checkpointWriter != null) engine.checkpointWriter.close();
+            if (savePath != null) Checkpoint.of(engine.logic).write(savePath);
+        } catch (IOException e) {
+            System.err.println("Could not save " + savePath + ": " + e.getMessage());
+            System.exit(1);
+        }
+
+        System.out.println("Trained " + engine.episodes + " episodes on map " + map + " with " + threads + " thread(s) in " + engine.trainingTime / 1000000 + " ms");
+        System.out.println("Episodes per second: " + (long) engine.episodesPerSecond());
+        System.out.println("Steps per second: " + (long) engine.stepsPerSecond());
+        //An episode stopped by the watchdog did not reach the goal, so the steps and the gap are only given for an episode that did
+        PathOracle oracle = new PathOracle(1024);
+        if (engine.lastEpisodeStopped) {
+            System.out.println("Last episode stopped by the watchdog, steps in last finished episode: " + engine.lastEpisodeSteps);
+            System.out.println("Shortest path: " + oracle.shortestPath(engine.logic.map) + ", no optimality gap since the last episode did not reach the goal");
+        } else {
+            System.out.println("Steps in last episode: " + engine.lastEpisodeSteps);
+            System.out.println("Shortest path: " + oracle.shortestPath(engine.logic.map) + ", optimality gap of last episode: " + oracle.optimalityGap(engine.logic.map, engine.lastEpisodeSteps));
+        }
+        EpisodeWatchdog watchdog = engine.logic.watchdog;
+        if (watchdog != null) System.out.println("Episodes stopped: " + watchdog.stepLimitEpisodes.sum() + " at the step limit, " + watchdog.revisitEpisodes.sum() + " for revisiting a field");
+        if (engine.logic.planner != null) {
+            //Every worker plans with its own model, so the updates and the models of all workers are added up
+            Logic[] workers = engine instanceof ParallelTrainer ? ((ParallelTrainer) engine).workers : new Logic[]{engine.logic};
+            long updates = 0;
+            long modelSize = 0;
+            for (Logic worker : workers) {
+                updates += worker.planner.updates;
+                modelSize += worker.planner.model.size;
+            }
+            System.out.println("Planning updates: " + updates + " (" + modelSize + " state-action pairs in the models of " + workers.length + " worker(s))");
+        }
+        if (engine.monitor != null) System.out.println(engine.monitor.converged() ? "Converged after " + engine.monitor.convergedEpisode + " episodes" : "Not converged");
+        if (engine.logic.Q instanceof SparseQTable) {
+            SparseQTable sparse = (SparseQTable) engine.logic.Q;
+            System.out.println("States stored: " + sparse.size + " of " + sparse.numberOfStates + " (" + sparse.occupancy() * 100 + " %)");
+        }
+        if (evaluations > 0) evaluate(engine.logic, map, evaluations, oracle);
+    }
+
+    /**
+     * Compiles the trained agent into a policy and runs it without training. Random levels get a new map for each episode
+     *
+     * @param logic       The trained logic
+     * @param map         The map to run on
+     * @param evaluations Number of episodes
+     * @param oracle      Finds the shortest paths the episodes are compared with
+     */
+    static void evaluate(Logic logic, int map, int evaluations, PathOracle oracle) {
+        long start = System.nanoTime();
+        Policy policy = Policy.compile(logic);
+        long compileTime = System.nanoTime() - start;
+        long steps = 0;
+        int solved = 0;
+        double gap = 0;
+        for (int i = 0; i < evaluations; i++) {
+            if (map == 8) logic.setMap(map);
+            int episodeSteps = policy.run(logic.map, logic.stateIndex, logic.random, EVALUATION_STEPS);
+            if (episodeSteps < 0) continue;
+            steps += episodeSteps;
+            gap += oracle.optimalityGap(logic.map, episodeSteps);
+            solved++;
+        }
+        long time = System.nanoTime() - start;
+        System.out.println("Compiled policy of " + policy.size() + " states in " + compileTime / 1000 + " us");
+        System.out.println("Evaluated " + evaluations + " episodes in " + time / 1000000 + " ms (" + (long) (evaluations * 1e9 / time) + " per second)");
+        System.out.println("Solved: " + solved + ", mean steps: " + (solved == 0 ? 0 : (double) steps / solved) + ", mean optimality gap: " + (solved == 0 ? 0 : gap / solved));
+        System.out.println("Shortest paths found: " + oracle.misses + ", reused: " + oracle.hits);
+    }
+
+    /**
+     * Prints how to use the program and exits
+     *
+     * @param error What was wrong with the arguments
+     */
+    static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: HeadlessMain [--map 0-8] [--episodes n] [--alpha a] [--gamma g] [--seed s] [--threads n] [--precision int|float|double] [--storage heap|off-heap|sparse] [--vision 1|2] [--rng splittable|xoroshiro] [--size columnsxrows] [--walls n] [--solvable-by-construction true|false] [--load file] [--save file] [--checkpoint-every n] [--metrics file|-] [--metrics-interval ms] [--converge window] [--evaluate n] [--replay capacity] [--replay-batch n] [--max-steps n] [--max-visits n] [--lambda l] [--planning dyna|prioritized] [--planning-steps n] [--exploration greedy|epsilon:e[:decay[:min]]|boltzmann:t[:decay[:min]]|ucb:c]");
+        System.exit(1);
+    }
+}
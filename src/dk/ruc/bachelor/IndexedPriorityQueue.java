@@ -0,0 +1,129 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+
+/**
+ * A max priority queue of int ids, e.g. the entries of a planning model. It is a binary heap of ids in an int array, and the position of every id in the heap is kept so an id that is already queued gets its priority raised instead of being queued twice. Nothing is boxed and nothing is allocated except when the arrays grow
+ */
+class IndexedPriorityQueue {
+
+    //The queued ids in heap order
+    int[] heap = new int[64];
+    int size;
+
+    //The priority of each id and its position in the heap, -1 if it is not queued
+    double[] priorities = new double[64];
+    int[] positions = new int[64];
+
+    /**
+     * Constructor marks every id as not queued
+     */
+    IndexedPriorityQueue() {
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Queues an id, or raises its priority if it is queued with a lower one
+     *
+     * @param id       The id, at least 0
+     * @param priority The priority
+     */
+    void push(int id, double priority) {
+        if (id >= positions.length) {
+            int oldLength = positions.length;
+            int length = Math.max(id + 1, oldLength * 2);
+            positions = Arrays.copyOf(positions, length);
+            Arrays.fill(positions, oldLength, length, -1);
+            priorities = Arrays.copyOf(priorities, length);
+        }
+        int position = positions[id];
+        if (position >= 0) {
+            if (priority > priorities[id]) {
+                priorities[id] = priority;
+                siftUp(position);
+            }
+            return;
+        }
+        if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+        priorities[id] = priority;
+        heap[size] = id;
+        positions[id] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Removes the id with the highest priority
+     *
+     * @return Returns the id
+     */
+    int pop() {
+        if (size == 0) throw new IllegalStateException("The queue is empty");
+        int id = heap[0];
+        positions[id] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return id;
+    }
+
+    /**
+     * Moves the id at a position up until its parent has a higher priority
+     *
+     * @param position The position in the heap
+     */
+    void siftUp(int position) {
+        int id = heap[position];
+        double priority = priorities[id];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (priorities[heap[parent]] >= priority) break;
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    /**
+     * Moves the id at a position down until both children have lower priorities
+     *
+     * @param position The position in the heap
+     */
+    void siftDown(int position) {
+        int id = heap[position];
+        double priority = priorities[id];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) break;
+            if (child + 1 < size && priorities[heap[child + 1]] > priorities[heap[child]]) child++;
+            if (priority >= priorities[heap[child]]) break;
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    /**
+     * Finds if nothing is queued
+     *
+     * @return Returns true if the queue is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all ids
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) positions[heap[i]] = -1;
+        size = 0;
+    }
+}
@@ -0,0 +1,77 @@
+package dk.ruc.bachelor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Q-table storing the values as ints. The Q-learning update is truncated to an int, like it always has been
+ */
+class IntQTable extends QTable {
+
+    //The values of the table
+    int[] values;
+
+    //Used to update a value atomically when the table is shared
+    static final VarHandle VALUE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * Constructor allocates the values
+     *
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     */
+    IntQTable(int numberOfStates, int numberOfActions) {
+        super(numberOfStates, numberOfActions, Precision.INT, Storage.HEAP);
+        values = new int[numberOfStates * numberOfActions];
+    }
+
+    @Override
+    double get(long state, int action) {
+        return values[index(state, action)];
+    }
+
+    @Override
+    void set(long state, int action, double value) {
+        values[index(state, action)] = (int) value;
+    }
+
+    @Override
+    double update(long state, int action, double target, double alpha) {
+        int index = index(state, action);
+        if (shared) {
+            //Retry until no other thread changed the value between reading and writing it
+            int oldValue, newValue;
+            do {
+                oldValue = (int) VALUE.getVolatile(values, index);
+                newValue = (int) ((1 - alpha) * oldValue + alpha * target);
+            } while (!VALUE.compareAndSet(values, index, oldValue, newValue));
+            return newValue - oldValue;
+        }
+        int oldValue = values[index];
+        values[index] = (int) ((1 - alpha) * oldValue + alpha * target);
+        return values[index] - oldValue;
+    }
+
+    @Override
+    QTable copy() {
+        IntQTable copy = new IntQTable((int) numberOfStates, numberOfActions);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        return copy;
+    }
+
+    @Override
+    long memoryUsage() {
+        return (long) values.length * Integer.BYTES;
+    }
+
+    @Override
+    void fill(double value) {
+        Arrays.fill(values, (int) value);
+    }
+
+    @Override
+    String format(long state, int action) {
+        return "" + values[index(state, action)];
+    }
+}
@@ -1,8 +1,6 @@
 package dk.ruc.bachelor;
 
-import java.util.Random;
-
-import static java.lang.Math.pow;
+import java.util.Arrays;
 
 /**
  * The logic class controls all logic related to the game and training of an agent
@@ -10,7 +8,7 @@ import static java.lang.Math.pow;
 class Logic {
 
     // Random object
-    Random random = new Random();
+    Rng random = new SplittableRng();
 
     //MapLibrary object
     MapLibrary mapLibrary = new MapLibrary();
@@ -20,10 +18,15 @@ class Logic {
     double gameHeight;
     double cellSize;
 
-    //Fixed grid size for all maps
+    //Grid size of the current map
     int columns = 15;
     int rows = 15;
 
+    //Grid size and number of walls of random maps
+    int randomColumns = 15;
+    int randomRows = 15;
+    int randomWalls = 9;
+
     //Agents positions and previous positions
     int agentX, agentY;
     int previousAgentX, previousAgentY;
@@ -34,18 +37,35 @@ class Logic {
     int QZero = 0;
     int rewardValue = 10000000;
 
+    //How many fields the agent sees in each direction, 1 is the 3x3 fields around it
+    int visionRange = 1;
+
     //The number of states and actions
-    int numberOfStates = (int) pow(3, 8); //6561
+    long numberOfStates = numberOfStates(visionRange); //6561
     int numberOfActions = 4; //up, down, left, right
 
+    //How each action moves the agent
+    static final int[] DX = {0, -1, 1, 0};
+    static final int[] DY = {-1, 0, 0, 1};
+
     //State action and old state action
-    int state;
+    long state;
     int action;
-    int oldState;
+    long oldState;
     int oldAction;
 
-    //2D arrays for the Q, R table and the map
-    int[][] Q, R, map;
+    //The Q and R tables
+    QTable Q, R;
+
+    //The type of the values in the tables and how they are stored
+    QTable.Precision precision = QTable.Precision.INT;
+    QTable.Storage storage = QTable.Storage.HEAP;
+
+    //The map
+    Grid map;
+
+    //The state id of each field of the map
+    StateIndex stateIndex;
 
     //Selected map
     int selectedMap;
@@ -53,6 +73,50 @@ class Logic {
     //Moves and saved moves
     int moves, savedMoves;
 
+    //Number of episodes in one training round
+    int episodesPerTraining = 7;
+
+    //The biggest change of a Q-value in the current episode
+    double maxDelta;
+
+    //Number of times the current episode changed the greedy action of a state, only counted if trackPolicy is true
+    int policyChanges;
+    boolean trackPolicy;
+
+    //Records metrics of the training if it is set
+    Metrics.Recorder recorder;
+
+    //Keeps the transitions so replayBatch of them are learned from again after every step, if it is set
+    ReplayBuffer replay;
+    int replayBatch;
+
+    //Plans with a learned model after every step if it is set
+    Planner planner;
+
+    //Spreads every update back along the recent path if it is set
+    EligibilityTraces traces;
+
+    //Decides the actions while training, the default is the original greedy way
+    ExplorationStrategy exploration = new GreedyExploration();
+
+    //Stops episodes that take too many steps or visit a field too often if it is set
+    EpisodeWatchdog watchdog;
+
+    //Visits to each field in the current episode, stored as x * rows + y. A count is only valid if its stamp is the stamp of the episode, so the counts are never cleared
+    int[] visitCounts, visitStamps;
+    int visitStamp;
+
+    //Visits are only counted on maps with at most this many fields, bigger maps only get the step limit so the counts never take more than 128 MB
+    static final int MAX_COUNTED_FIELDS = 1 << 24;
+
+    //Number of episodes stopped by the watchdog, and if the last episode was one of them
+    long runawayEpisodes;
+    boolean episodeStopped;
+
+    //Set by another thread to stop the training, read every CANCEL_CHECK_INTERVAL steps so the check costs nothing in the loop
+    volatile boolean cancelled;
+    static final int CANCEL_CHECK_INTERVAL = 1024;
+
     /**
      * Constructor sets some variables depending of the width and height of the canvas
      *
@@ -62,11 +126,35 @@ class Logic {
     Logic(double gameWidthInput, double gameHeightInput) {
         gameWidth = gameWidthInput;
         gameHeight = gameHeightInput;
-        if (gameWidth > gameHeight) cellSize = gameWidth / columns;
-        else cellSize = gameHeight / rows;
         initialize();
     }
 
+    /**
+     * Constructor used when training headless. Nothing is drawn so the cell size is left at 0
+     */
+    Logic() {
+        this(0, 0);
+    }
+
+    /**
+     * Seeds the random objects so a training can be repeated
+     *
+     * @param seed The seed used for both the agent and the random maps
+     */
+    void setSeed(long seed) {
+        setRandom(new SplittableRng(seed));
+    }
+
+    /**
+     * Sets the random object of the agent and splits another one from it for the random maps
+     *
+     * @param randomInput The random object to use
+     */
+    void setRandom(Rng randomInput) {
+        random = randomInput;
+        mapLibrary.random = random.split();
+    }
+
     /**
      * Sets the selected map, initializes it, sets agent position and initializes tables
      */
@@ -79,7 +167,42 @@ class Logic {
     }
 
     /**
-     * Initializes map according to what map is selected. Important notice, due to a bug that caused a lot of fields in random generated maps to become agents we found a workaround that resets all agent game objects to empty fields and then places an agent at the starting position
+     * Finds the default number of walls of a random map. The number of walls grows with the number of fields, so a 15x15 map gets 9 walls
+     *
+     * @param columns Number of columns
+     * @param rows    Number of rows
+     * @return Returns the number of walls
+     */
+    static int defaultWalls(int columns, int rows) {
+        return (int) ((long) columns * rows / 25);
+    }
+
+    /**
+     * Sets the size and number of walls of random maps
+     *
+     * @param columnsInput Number of columns
+     * @param rowsInput    Number of rows
+     * @param wallsInput   Number of walls
+     */
+    void setRandomMapSize(int columnsInput, int rowsInput, int wallsInput) {
+        if (columnsInput < 4 || rowsInput < 4) throw new IllegalArgumentException("Random maps must be at least 4x4");
+        if ((long) columnsInput * rowsInput > Grid.MAX_FIELDS) throw new IllegalArgumentException("Random maps can have at most " + Grid.MAX_FIELDS + " fields");
+        randomColumns = columnsInput;
+        randomRows = rowsInput;
+        randomWalls = wallsInput;
+    }
+
+    /**
+     * Sets how random maps are made solvable
+     *
+     * @param solvableByConstruction If true the maps are built around a path from start to goal, otherwise maps are generated until one is solvable
+     */
+    void setSolvableByConstruction(boolean solvableByConstruction) {
+        mapLibrary.solvableByConstruction = solvableByConstruction;
+    }
+
+    /**
+     * Initializes map according to what map is selected. The map is kept in a grid which does not store the agent, the agent is only stored as its position
      */
     void initializeMap() {
         if (selectedMap == 0) map = mapLibrary.zero;
@@ -90,31 +213,69 @@ class Logic {
         else if (selectedMap == 5) map = mapLibrary.custom2;
         else if (selectedMap == 6) map = mapLibrary.custom3;
         else if (selectedMap == 7) map = mapLibrary.custom4;
-        else map = mapLibrary.randomMap(columns, rows, 9);
+        else map = mapLibrary.randomMap(randomColumns, randomRows, randomWalls);
+        columns = map.columns;
+        rows = map.rows;
 
-        //Workaround
-        for (int i = 0; i < columns - 1; i++) {
-            for (int j = 0; j < rows - 1; j++) {
-                if (map[i][j] == 3) map[i][j] = 0;
-            }
+        //The cell size that makes the whole map fit the canvas
+        cellSize = Math.min(gameWidth / columns, gameHeight / rows);
 
-        }
-        map[1][1] = 3;
+        if (stateIndex == null || stateIndex.visionRange != visionRange) stateIndex = new StateIndex(map, visionRange);
+        else stateIndex.setMap(map);
     }
 
     /**
-     * Initializes the tables and sets the values to 0
+     * Changes a field of the map while it is in use and updates the state ids of the fields around it
+     *
+     * @param x     X coordinate of the field
+     * @param y     Y coordinate of the field
+     * @param value The new value of the field
      */
-    void initializeTables() {
-        Q = new int[numberOfStates][numberOfActions];
-        R = new int[numberOfStates][numberOfActions];
+    void setField(int x, int y, int value) {
+        map.set(x, y, value);
+        stateIndex.update(x, y);
+    }
 
-        for (int i = 0; i < numberOfStates; i++) {
-            for (int j = 0; j < numberOfActions; j++) {
-                Q[i][j] = QZero;
-                R[i][j] = 0;
-            }
+    /**
+     * Finds the number of states for a vision range. Every field the agent sees can be empty, a wall or the goal
+     *
+     * @param range How many fields the agent sees in each direction
+     * @return Returns 3 to the power of the number of fields seen
+     */
+    static long numberOfStates(int range) {
+        int fieldsSeen = (2 * range + 1) * (2 * range + 1) - 1;
+        long states = 1;
+        for (int i = 0; i < fieldsSeen; i++) states *= 3;
+        return states;
+    }
+
+    /**
+     * Sets how far the agent sees and creates new tables for the new number of states. Dense tables only fit the 3x3 vision, so a wider vision uses sparse tables
+     *
+     * @param range How many fields the agent sees in each direction, 1 or 2
+     */
+    void setVisionRange(int range) {
+        if (range < 1 || range > 2) throw new IllegalArgumentException("The vision range must be 1 or 2");
+        visionRange = range;
+        numberOfStates = numberOfStates(range);
+        if (range > 1) storage = QTable.Storage.SPARSE;
+        stateIndex = new StateIndex(map, visionRange);
+        initializeTables();
+    }
+
+    /**
+     * Initializes the tables and sets the values to Q-zero and 0. The tables are only created again if their type or size changed, so tables shared with other logics stay shared
+     */
+    void initializeTables() {
+        if (Q == null || Q.precision != precision || Q.storage != storage || Q.numberOfStates != numberOfStates) {
+            Q = QTable.create(precision, storage, numberOfStates, numberOfActions);
+            R = QTable.create(precision, storage, numberOfStates, numberOfActions);
         }
+        Q.fill(QZero);
+        R.fill(0);
+        if (replay != null) replay.clear();
+        if (planner != null) planner.reset();
+        exploration.reset();
     }
 
     /**
@@ -132,15 +293,90 @@ class Logic {
     }
 
     /**
-     * Sets the map and runs until the agent reaches the goal.
+     * Runs one episode of training until the agent reaches the goal or the training is cancelled. A cancelled episode puts the agent back at the start. An episode stopped by the watchdog returns its steps like a finished one and sets episodeStopped
+     *
+     * @return Returns the number of steps the episode took or -1 if it was cancelled
+     */
+    int runEpisode() {
+        maxDelta = 0;
+        policyChanges = 0;
+        episodeStopped = false;
+        if (watchdog != null) return runWatchedEpisode();
+        while (!doAction(true)) {
+            if (moves % CANCEL_CHECK_INTERVAL == 0 && cancelled) {
+                resetMap();
+                return -1;
+            }
+        }
+        return savedMoves;
+    }
+
+    /**
+     * Runs one episode like runEpisode, but stops it when it goes over the limits of the watchdog. A stopped episode is reported and puts the agent back at the start
      *
-     * @param map What the map should be
+     * @return Returns the number of steps the episode took or -1 if it was cancelled
+     */
+    int runWatchedEpisode() {
+        int maxSteps = watchdog.maxSteps > 0 ? watchdog.maxSteps : Integer.MAX_VALUE;
+        int maxVisits = (long) map.columns * map.rows <= MAX_COUNTED_FIELDS ? watchdog.maxVisits : 0;
+        if (maxVisits > 0) startVisitCount();
+        while (!doAction(true)) {
+            if (moves % CANCEL_CHECK_INTERVAL == 0 && cancelled) {
+                resetMap();
+                return -1;
+            }
+            if (moves >= maxSteps) return stopRunaway(EpisodeWatchdog.Reason.STEP_LIMIT);
+            if (maxVisits > 0 && visit(agentX * map.rows + agentY) > maxVisits) return stopRunaway(EpisodeWatchdog.Reason.REVISITS);
+        }
+        return savedMoves;
+    }
+
+    /**
+     * Starts counting the visits of a new episode. The counts are only allocated again when the map grows
      */
-    void trainAgent(int map) {
-        setMap(map);
-        for (int i = 0; i < 7; i++) {
-            while (!doAction(true)) ;
+    void startVisitCount() {
+        int fields = map.columns * map.rows;
+        if (visitCounts == null || visitCounts.length < fields) {
+            visitCounts = new int[fields];
+            visitStamps = new int[fields];
+            visitStamp = 0;
+        }
+        visitStamp++;
+        if (visitStamp == 0) {
+            Arrays.fill(visitStamps, 0);
+            visitStamp = 1;
         }
+        visit(agentX * map.rows + agentY);
+    }
+
+    /**
+     * Counts a visit to a field in the current episode
+     *
+     * @param field The field stored as x * rows + y
+     * @return Returns the number of visits to the field in the episode including this one
+     */
+    int visit(int field) {
+        if (visitStamps[field] != visitStamp) {
+            visitStamps[field] = visitStamp;
+            visitCounts[field] = 0;
+        }
+        return ++visitCounts[field];
+    }
+
+    /**
+     * Stops an episode that went over a limit of the watchdog
+     *
+     * @param reason Why the episode is stopped
+     * @return Returns the number of steps the episode took
+     */
+    int stopRunaway(EpisodeWatchdog.Reason reason) {
+        int steps = moves;
+        runawayEpisodes++;
+        episodeStopped = true;
+        watchdog.report(reason, steps, agentX, agentY);
+        exploration.episodeFinished();
+        resetMap();
+        return steps;
     }
 
     /**
@@ -149,9 +385,17 @@ class Logic {
      * @return returns true if it reached goal and false is not
      */
     boolean doAction(boolean shouldTrain) {
+        //Only some steps are timed when metrics are recorded
+        boolean sample = recorder != null && recorder.sample();
+        long startTime = sample ? System.nanoTime() : 0;
+
         state = findStateId(); //Find id of current position
+        long stateTime = sample ? System.nanoTime() : 0;
+        if (recorder != null) recorder.visit(state);
         updateRTable(); //Update the R-table for this state
         action = decideAction();
+        if (traces != null && shouldTrain && traces.size > 0 && !isGreedy(action)) traces.clear();
+        long actionTime = sample ? System.nanoTime() : 0;
 
         //Save the old state and positions
         oldState = state;
@@ -164,44 +408,68 @@ class Logic {
         savedMoves = moves;
 
         //Move the agent, update the Q-table and check if it reached goal
-        map[agentX][agentY] = 0; //Remove the agent from its current position
         moveAgent(action); //Move the agent according to the action found before
         if (shouldTrain) updateQTable();
+        if (sample) recorder.time(stateTime - startTime, actionTime - stateTime, System.nanoTime() - actionTime);
 
-        if (map[agentX][agentY] == 2) {
+        if (map.get(agentX, agentY) == 2) {
+            if (recorder != null) recorder.episode(moves);
+            exploration.episodeFinished();
             resetMap();
             return true; //If moving towards the goal the game is won
-        } else map[agentX][agentY] = 3;//Else it places the agent at the new position
+        }
+        return false;
+    }
+
+    /**
+     * Takes one step with a compiled policy instead of the tables. Nothing is trained, so the state is only looked up in the policy
+     *
+     * @param policy The compiled policy
+     * @return Returns true if it reached the goal and false if not
+     */
+    boolean doPolicyAction(Policy policy) {
+        action = policy.action(findStateId(), random);
+        previousAgentX = agentX;
+        previousAgentY = agentY;
+        moves++;
+        savedMoves = moves;
+        moveAgent(action);
+        if (map.get(agentX, agentY) == 2) {
+            resetMap();
+            return true;
+        }
         return false;
     }
 
     /**
-     * Decides the best action from the current state
+     * Decides the action from the current state with the exploration strategy, which picks among the valid actions found when the map was set
      *
-     * @return Returns the best action
+     * @return Returns the action
      */
     int decideAction() {
-        int bestAction = random.nextInt(4); //The action taken is random unless another actions Q-value is greater
-        while (!validAction(bestAction)) bestAction = random.nextInt(4);
+        return exploration.decide(this, stateIndex.validActions(agentX, agentY));
+    }
 
-        //Find the action that has the greatest Q-value
-        for (int i = 0; i < 4; i++) {
-            if (R[state][i] + Q[state][i] > R[state][bestAction] + Q[state][bestAction]) {
-                if (validAction(i)) bestAction = i;
-            }
-        }
-        return bestAction;
+    /**
+     * Picks one of the actions in a bit mask at random, without retrying actions that are not in it
+     *
+     * @param actions Bit mask with a bit set for each action to pick from
+     * @return Returns the action
+     */
+    int randomAction(int actions) {
+        //Remove the lowest actions until the picked one is the lowest
+        for (int i = random.nextInt(Integer.bitCount(actions)); i > 0; i--) actions &= actions - 1;
+        return Integer.numberOfTrailingZeros(actions);
     }
 
     /**
      * Resets the positions of the agent and number of moves ready for a new training round
      */
     void resetMap() {
-        map[previousAgentX][previousAgentY] = 0;
         agentX = 1;
         agentY = 1;
-        map[agentX][agentY] = 3;
         moves = 0;
+        if (traces != null) traces.clear();
     }
 
     /**
@@ -210,10 +478,8 @@ class Logic {
      * @param action Is the action decided for the agent
      */
     void moveAgent(int action) {
-        if (action == 0) agentY -= 1;
-        if (action == 1) agentX -= 1;
-        if (action == 2) agentX += 1;
-        if (action == 3) agentY += 1;
+        agentX += DX[action];
+        agentY += DY[action];
     }
 
     /**
@@ -223,40 +489,27 @@ class Logic {
      * @return returns true if its valid and false if invalid
      */
     boolean validAction(int action) {
-        if (action == 0 && map[agentX][agentY - 1] == 1) return false;
-        if (action == 1 && map[agentX - 1][agentY] == 1) return false;
-        if (action == 2 && map[agentX + 1][agentY] == 1) return false;
-        if (action == 3 && map[agentX][agentY + 1] == 1) return false;
-        return true;
+        return (stateIndex.validActions(agentX, agentY) >> action & 1) != 0;
     }
 
     /**
      * Change R-table according to goals from the agents position and state
      */
     void updateRTable() {
-        if (map[agentX][agentY - 1] == 2) R[state][0] = rewardValue;
-        if (map[agentX - 1][agentY] == 2) R[state][1] = rewardValue;
-        if (map[agentX + 1][agentY] == 2) R[state][2] = rewardValue;
-        if (map[agentX][agentY + 1] == 2) R[state][3] = rewardValue;
+        int goalActions = stateIndex.goalActions(agentX, agentY);
+        if (goalActions == 0) return;
+        for (int i = 0; i < numberOfActions; i++) {
+            if ((goalActions >> i & 1) != 0) R.set(state, i, rewardValue);
+        }
     }
 
     /**
-     * Determines the id of the state the agent is in
+     * Determines the id of the state the agent is in. The ids are computed when the map is set, so this is only a lookup
      *
      * @return Returns the id of the state
      */
-    int findStateId() {
-        int stateId = 0;
-        int divider = 3;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (i != 1 || j != 1) {
-                    stateId += numberOfStates / divider * map[agentX + i - 1][agentY + j - 1];
-                    divider *= 3;
-                }
-            }
-        }
-        return stateId;
+    long findStateId() {
+        return stateIndex.get(agentX, agentY);
     }
 
     /**
@@ -268,7 +521,72 @@ class Logic {
         action = maxQ();
 
         //The Q-table update itself
-        Q[oldState][oldAction] = (int) ((1 - alpha) * Q[oldState][oldAction] + alpha * (R[oldState][oldAction] + gamma * Q[state][action]));
+        double target = R.get(oldState, oldAction) + gamma * Q.get(state, action);
+        double error = target - Q.get(oldState, oldAction);
+        if (recorder != null) recorder.update(error);
+        double delta = Q.update(oldState, oldAction, target, alpha);
+        maxDelta = Math.max(maxDelta, Math.abs(delta));
+        if (trackPolicy && delta != 0 && greedyChanged(oldState, oldAction, stateIndex.validActions(previousAgentX, previousAgentY), delta)) policyChanges++;
+        if (traces != null) traces.backup(this, oldState, oldAction, stateIndex.validActions(previousAgentX, previousAgentY), error);
+
+        if (replay != null) {
+            replay.add(oldState, oldAction, R.get(oldState, oldAction), state);
+            replayTransitions();
+        }
+        if (planner != null) planner.plan(this, oldState, oldAction, R.get(oldState, oldAction), state);
+    }
+
+    /**
+     * Finds if an action is as good as the action the Q-table update uses for the state, which is what Watkins's Q(lambda) needs to know to keep the traces
+     *
+     * @param decidedAction The action decided in the current state
+     * @return Returns true if no action of the state has a greater value
+     */
+    boolean isGreedy(int decidedAction) {
+        int greedyAction = maxQ(state);
+        return R.get(state, decidedAction) + Q.get(state, decidedAction) >= R.get(state, greedyAction) + Q.get(state, greedyAction);
+    }
+
+    /**
+     * Sets up experience replay, so every step also learns from transitions of earlier steps
+     *
+     * @param capacity The number of transitions kept, or 0 to turn replay off
+     * @param batch    The number of transitions replayed after every step
+     */
+    void setReplay(int capacity, int batch) {
+        if (batch < 0) throw new IllegalArgumentException("The replay batch can not be negative");
+        replay = capacity > 0 ? new ReplayBuffer(capacity) : null;
+        replayBatch = batch;
+    }
+
+    /**
+     * Updates the Q-table with a batch of stored transitions picked at random. The target of each transition uses the current Q-values of the state it led to. Replayed updates are not counted in maxDelta or policyChanges, which describe the steps of the episode
+     */
+    void replayTransitions() {
+        for (int i = 0; i < replayBatch; i++) {
+            int transition = replay.sample(random);
+            long nextState = replay.states[transition];
+            double target = replay.rewards[transition] + gamma * Q.get(nextState, maxQ(nextState));
+            Q.update(replay.oldStates[transition], replay.actions[transition], target, alpha);
+        }
+    }
+
+    /**
+     * Finds if a Q-table update changed which action is the best in a state. Only the updated action changed, so it is compared with the best of the other valid actions before and after the update
+     *
+     * @param updatedState  The state that was updated
+     * @param updatedAction The action that was updated
+     * @param validActions  Bit mask of the actions that do not walk into a wall from the state
+     * @param delta         How much the Q-value of the state and action changed
+     * @return Returns true if the updated action became or stopped being the best action
+     */
+    boolean greedyChanged(long updatedState, int updatedAction, int validActions, double delta) {
+        double bestOther = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numberOfActions; i++) {
+            if (i != updatedAction && (validActions >> i & 1) != 0) bestOther = Math.max(bestOther, R.get(updatedState, i) + Q.get(updatedState, i));
+        }
+        double newValue = R.get(updatedState, updatedAction) + Q.get(updatedState, updatedAction);
+        return (newValue - delta > bestOther) != (newValue > bestOther);
     }
 
     /**
@@ -277,11 +595,22 @@ class Logic {
      * @return Returns the maximum Q-value between the actions of the current state
      */
     int maxQ() {
+        return maxQ(state);
+    }
+
+    /**
+     * Finds the action with the highest Q-value in a state
+     *
+     * @param fromState The state
+     * @return Returns the action with the maximum Q-value between the actions of the state
+     */
+    int maxQ(long fromState) {
         double maxQ = 0;
         int maxQAction = 0;
         for (int i = 0; i < numberOfActions; i++) {
-            if (Q[state][i] + R[state][i] >= maxQ) {
-                maxQ = Q[state][i] + R[state][i];
+            double value = Q.get(fromState, i) + R.get(fromState, i);
+            if (value >= maxQ) {
+                maxQ = value;
                 maxQAction = i;
             }
         }
@@ -1,20 +1,30 @@
 package dk.ruc.bachelor;
 
-import java.util.Random;
-
 /**
  * The map library contain all the preconfigured maps and a random map generator
  */
 class MapLibrary {
 
     //Random object
-    Random random = new Random();
+    Rng random = new SplittableRng();
+
+    //Grids for the maps
+    Grid zero, random1, random2, random3, custom1, custom2, custom3, custom4;
+
+    //Generator of random maps and the generated maps that have not been used yet
+    MazeGenerator generator;
+    Grid[] randomMaps;
+    int nextRandomMap;
 
-    //2D arrays for the maps
-    int[][] zero, random1, random2, random3, custom1, custom2, custom3, custom4;
+    //If true random maps are built around a path instead of generated until one is solvable, see MazeGenerator.guaranteed
+    boolean solvableByConstruction = false;
 
-    //Boolean if 2 fields are connected
-    boolean connected = false;
+    //Number of random maps generated at a time, fewer are generated if the maps are big
+    static final int RANDOM_MAP_BATCH = 256;
+    static final int RANDOM_MAP_BATCH_FIELDS = 1 << 24;
+
+    //Flood fill used to check if maps are solvable
+    FloodFill floodFill = new FloodFill();
 
     /**
      * Constructor calls the function initializeMaps
@@ -24,10 +34,10 @@ class MapLibrary {
     }
 
     /**
-     * Initializes the preconfigured maps
+     * Initializes the preconfigured maps. The agent is shown at its starting position but it is not stored in the grids
      */
     void initializeMaps() {
-        zero = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        zero = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
@@ -41,9 +51,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        random1 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        random1 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
@@ -57,9 +67,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        random2 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        random2 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1},
@@ -73,9 +83,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1},
                 {1, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 1},
                 {1, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        random3 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        random3 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1},
                 {1, 0, 0, 0, 1, 0, 0, 0, 1, 1, 0, 0, 0, 0, 1},
                 {1, 1, 0, 0, 0, 1, 0, 1, 1, 0, 0, 0, 0, 0, 1},
@@ -89,9 +99,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        custom1 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        custom1 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
@@ -105,9 +115,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        custom2 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        custom2 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 1},
@@ -121,9 +131,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        custom3 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        custom3 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1},
                 {1, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
@@ -137,9 +147,9 @@ class MapLibrary {
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1},
                 {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
 
-        custom4 = new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+        custom4 = Grid.of(new int[][]{{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
                 {1, 3, 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 1, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 1},
@@ -153,92 +163,38 @@ class MapLibrary {
                 {1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 1, 1},
                 {1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 1},
                 {1, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 2, 1},
-                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}};
+                {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}});
     }
 
     /**
-     * The main function responsible for generating a valid random map
+     * The main function responsible for generating a valid random map. Maps are generated in batches in parallel and handed out one at a time
      *
      * @param columns Number of columns big
      * @param rows    Number of rows big
      * @param walls   Number of walls to add
      * @return Returns the solvable map
      */
-    int[][] randomMap(int columns, int rows, int walls) {
-        int[][] randomMap = randomMapCandidate(columns, rows, walls);
-        while (!isSolvable(randomMap)) randomMap = randomMapCandidate(columns, rows, walls);
-        return randomMap;
-    }
-
-    /**
-     * Generates a new map however it is not necessarily solvable
-     *
-     * @param columns Number of columns big
-     * @param rows    Number of rows big
-     * @param walls   Number of walls to add
-     * @return Returns the map candidate
-     */
-    int[][] randomMapCandidate(int columns, int rows, int walls) {
-        //Set all values of the map to 0 which is empty fields
-        int[][] mapCandidate = new int[columns][rows];
-        for (int i = 0; i < columns; i++) {
-            for (int j = 0; j < rows; j++) {
-                mapCandidate[i][j] = 0;
-            }
-        }
-        //Random walls
-        for (int i = 0; i < walls; i++) {
-            int randomX = random.nextInt(columns - 2) + 1;
-            int randomY = random.nextInt(rows - 2) + 1;
-            mapCandidate[randomX][randomY] = 1;
+    Grid randomMap(int columns, int rows, int walls) {
+        if (generator == null || generator.columns != columns || generator.rows != rows || generator.walls != walls || generator.guaranteed != solvableByConstruction) {
+            generator = new MazeGenerator(columns, rows, walls);
+            generator.guaranteed = solvableByConstruction;
+            randomMaps = null;
         }
-        //Walls in sides
-        for (int i = 0; i < columns; i++) {
-            mapCandidate[0][i] = 1;
-            mapCandidate[i][0] = 1;
-            mapCandidate[rows - 1][i] = 1;
-            mapCandidate[i][rows - 1] = 1;
+        if (randomMaps == null || nextRandomMap == randomMaps.length) {
+            int batch = (int) Math.max(1, Math.min(RANDOM_MAP_BATCH, RANDOM_MAP_BATCH_FIELDS / ((long) columns * rows)));
+            randomMaps = generator.generateBatch(batch, random.split());
+            nextRandomMap = 0;
         }
-        //Objects on map
-        mapCandidate[1][1] = 3; //Agent on map
-        mapCandidate[columns - 2][rows - 2] = 2; //Goal on map
-
-        return mapCandidate;
+        return randomMaps[nextRandomMap++];
     }
 
     /**
-     * Checks whether or not the map is solvable
+     * Checks whether or not the map is solvable. The map is not changed
      *
      * @param mapInput The map that should be checked
      * @return Returns true if its solvable and false if not
      */
-    boolean isSolvable(int[][] mapInput) {
-        int[][] testMap = mapInput;
-        connected = false;
-        checkFieldConnection(testMap, 1, 1);
-        if (!connected) return false;
-        else return true;
-    }
-
-    /**
-     * Recursive algorithm that checks the fields next to itself. The map is solvable if it reaches the goal meaning there is a way from start to goal and it is unsolvable if it does not reach the goal
-     *
-     * @param mapInput Map to check on
-     * @param x        X coordinate to check from
-     * @param y        Y coordinate to check from
-     */
-    void checkFieldConnection(int[][] mapInput, int x, int y) {
-        if (!connected) {
-            mapInput[x][y] = 3;
-            if (mapInput[x - 1][y] == 2) connected = true;
-            if (mapInput[x + 1][y] == 2) connected = true;
-            if (mapInput[x][y - 1] == 2) connected = true;
-            if (mapInput[x][y + 1] == 2) connected = true;
-
-            if (mapInput[x + 1][y] == 0) checkFieldConnection(mapInput, x + 1, y);
-            if (mapInput[x][y + 1] == 0) checkFieldConnection(mapInput, x, y + 1);
-            if (mapInput[x - 1][y] == 0) checkFieldConnection(mapInput, x - 1, y);
-            if (mapInput[x][y - 1] == 0) checkFieldConnection(mapInput, x, y - 1);
-        }
+    boolean isSolvable(Grid mapInput) {
+        return floodFill.reachesGoal(mapInput, 1, 1);
     }
 }
@@ -0,0 +1,112 @@
+package dk.ruc.bachelor;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Generates random maps with walls around the edges, the start in the top left corner and the goal in the bottom right corner. Maps can be generated in batches that are spread over all cores
+ */
+class MazeGenerator {
+
+    //Size of the maps and the number of random walls
+    int columns, rows, walls;
+
+    //If true the maps are built around a path from start to goal, so no candidates are thrown away. The path only goes right and down, so these maps are never walled off in a way that needs a detour up or left
+    boolean guaranteed = false;
+
+    //Flood fill for each thread, so the bit set and the queue are reused
+    static final ThreadLocal<FloodFill> FLOOD_FILL = ThreadLocal.withInitial(FloodFill::new);
+
+    /**
+     * Constructor sets the size of the maps
+     *
+     * @param columnsInput Number of columns big
+     * @param rowsInput    Number of rows big
+     * @param wallsInput   Number of walls to add
+     */
+    MazeGenerator(int columnsInput, int rowsInput, int wallsInput) {
+        columns = columnsInput;
+        rows = rowsInput;
+        walls = wallsInput;
+    }
+
+    /**
+     * Generates a batch of solvable maps in parallel. Every map gets its own random object split from the master before the work is spread out, so the same master gives the same maps no matter how the threads are scheduled
+     *
+     * @param count  Number of maps
+     * @param master The random object the maps are made from
+     * @return Returns the maps
+     */
+    Grid[] generateBatch(int count, Rng master) {
+        Rng[] randoms = new Rng[count];
+        for (int i = 0; i < count; i++) randoms[i] = master.split();
+        Grid[] maps = new Grid[count];
+        IntStream.range(0, count).parallel().forEach(i -> maps[i] = generate(randoms[i]));
+        return maps;
+    }
+
+    /**
+     * Generates one solvable map
+     *
+     * @param random The random object to use
+     * @return Returns the map
+     */
+    Grid generate(Rng random) {
+        if (guaranteed) return generateAroundPath(random);
+        FloodFill floodFill = FLOOD_FILL.get();
+        Grid map = candidate(random, null);
+        while (!floodFill.reachesGoal(map, 1, 1)) map = candidate(random, null);
+        return map;
+    }
+
+    /**
+     * Generates a map that is solvable by construction. A random path that only goes right and down is laid from the start to the goal first, and walls are never placed on it. This takes time proportional to the size of the map, but it skews the maps compared with rejection sampling: there is always a path without steps up or left, so maps whose only way to the goal winds back are never generated
+     *
+     * @param random The random object to use
+     * @return Returns the map
+     */
+    Grid generateAroundPath(Rng random) {
+        BitSet path = new BitSet(columns * rows);
+        int x = 1;
+        int y = 1;
+        path.set(x * rows + y);
+        while (x < columns - 2 || y < rows - 2) {
+            if (y == rows - 2 || (x < columns - 2 && random.nextInt(2) == 0)) x++;
+            else y++;
+            path.set(x * rows + y);
+        }
+        return candidate(random, path);
+    }
+
+    /**
+     * Generates a new map however it is not necessarily solvable
+     *
+     * @param random The random object to use
+     * @param path   Fields where no walls may be placed stored as x * rows + y, or null
+     * @return Returns the map candidate
+     */
+    Grid candidate(Rng random, BitSet path) {
+        //All fields start as 0 which is empty fields
+        Grid mapCandidate = new Grid(columns, rows);
+        //Random walls
+        for (int i = 0; i < walls; i++) {
+            int randomX = random.nextInt(columns - 2) + 1;
+            int randomY = random.nextInt(rows - 2) + 1;
+            if (path == null || !path.get(randomX * rows + randomY)) mapCandidate.set(randomX, randomY, 1);
+        }
+        //Walls in sides
+        for (int i = 0; i < columns; i++) {
+            mapCandidate.set(i, 0, 1);
+            mapCandidate.set(i, rows - 1, 1);
+        }
+        for (int j = 0; j < rows; j++) {
+            mapCandidate.set(0, j, 1);
+            mapCandidate.set(columns - 1, j, 1);
+        }
+        //Objects on map, the agent is not placed since it always starts at 1, 1
+        mapCandidate.set(1, 1, 0);
+        mapCandidate.set(columns - 2, rows - 2, 2); //Goal on map
+
+        return mapCandidate;
+    }
+}
@@ -0,0 +1,146 @@
+package dk.ruc.bachelor;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws the map and the agent on the canvas. The map only changes when a new map is set, so it is drawn once into an image pixel by pixel, which costs the same no matter how many fields the map has. Each frame only the area the agent was drawn in last frame is restored from the image before the agent, its vision and its Q-values are drawn at the new position
+ */
+class MazeRenderer {
+
+    //The canvas and its graphics context, which is looked up once
+    Canvas canvas;
+    GraphicsContext graphics;
+
+    //The map drawn without the agent and the map it was drawn from
+    WritableImage background;
+    Grid backgroundMap;
+
+    //The area the agent was drawn in last frame, which must be restored before drawing it again
+    double dirtyX, dirtyY, dirtyWidth, dirtyHeight;
+
+    //Room around the vision for the Q-values written next to it
+    static final double TEXT_WIDTH = 60;
+    static final double TEXT_HEIGHT = 15;
+
+    //Grid lines are only drawn when the fields are at least this many pixels wide
+    static final double MIN_GRID_LINE_CELL = 4;
+
+    //Colors of empty fields, walls, the goal and the grid lines as ARGB
+    static final int[] FIELD_COLORS = {0xFFFFFFFF, 0xFF808080, 0xFF008000};
+    static final int GRID_LINE_COLOR = 0xFF000000;
+
+    /**
+     * Constructor looks up the graphics context of the canvas
+     *
+     * @param canvasInput The canvas to draw on
+     */
+    MazeRenderer(Canvas canvasInput) {
+        canvas = canvasInput;
+        graphics = canvas.getGraphicsContext2D();
+    }
+
+    /**
+     * Makes the next frame draw the map again, e.g. after the map has been set or changed
+     */
+    void invalidate() {
+        backgroundMap = null;
+    }
+
+    /**
+     * Draws one frame. The whole map is only drawn if it has changed since the last frame
+     *
+     * @param frame What to draw
+     */
+    void draw(FrameSnapshot frame) {
+        if (background == null || backgroundMap != frame.map) {
+            drawBackground(frame);
+            graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            graphics.drawImage(background, 0, 0);
+        } else {
+            graphics.clearRect(dirtyX, dirtyY, dirtyWidth, dirtyHeight);
+            graphics.drawImage(background, dirtyX, dirtyY, dirtyWidth, dirtyHeight, dirtyX, dirtyY, dirtyWidth, dirtyHeight);
+        }
+        drawAgent(frame);
+    }
+
+    /**
+     * Draws the map into the background image, one pixel at a time
+     *
+     * @param frame The frame with the map
+     */
+    void drawBackground(FrameSnapshot frame) {
+        int width = (int) canvas.getWidth();
+        int height = (int) canvas.getHeight();
+        if (background == null || background.getWidth() != width || background.getHeight() != height) background = new WritableImage(width, height);
+        double cellSize = frame.cellSize;
+        int mapWidth = Math.min(width, (int) Math.ceil(cellSize * frame.columns));
+        int mapHeight = Math.min(height, (int) Math.ceil(cellSize * frame.rows));
+        boolean gridLines = cellSize >= MIN_GRID_LINE_CELL;
+
+        //The field and grid line of each pixel column are found once
+        int[] columnFields = new int[mapWidth];
+        boolean[] columnLines = new boolean[mapWidth];
+        for (int px = 0; px < mapWidth; px++) {
+            columnFields[px] = Math.min(frame.columns - 1, (int) (px / cellSize));
+            columnLines[px] = gridLines && (px == 0 || columnFields[px] != columnFields[px - 1] || px == mapWidth - 1);
+        }
+
+        int[] pixels = new int[width * height];
+        for (int py = 0; py < mapHeight; py++) {
+            int y = Math.min(frame.rows - 1, (int) (py / cellSize));
+            boolean rowLine = gridLines && (py == 0 || y != (int) ((py - 1) / cellSize) || py == mapHeight - 1);
+            for (int px = 0; px < mapWidth; px++) {
+                pixels[py * width + px] = rowLine || columnLines[px] ? GRID_LINE_COLOR : FIELD_COLORS[frame.map.get(columnFields[px], y)];
+            }
+        }
+        background.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        backgroundMap = frame.map;
+    }
+
+    /**
+     * Draws the agent, its vision and the Q-values of its state, and remembers the area drawn in
+     *
+     * @param frame The frame with the agent
+     */
+    void drawAgent(FrameSnapshot frame) {
+        double cellSize = frame.cellSize;
+        double x = cellSize * frame.agentX;
+        double y = cellSize * frame.agentY;
+
+        //The agent is not stored in the map so it is drawn at its position
+        graphics.setFill(Color.BLUE);
+        graphics.setStroke(Color.BLACK);
+        graphics.fillRect(x, y, cellSize, cellSize);
+        graphics.strokeRect(x, y, cellSize, cellSize);
+
+        //Vision for the agent
+        double vision = cellSize * frame.visionRange;
+        graphics.setStroke(Color.RED);
+        graphics.strokeRect(x - vision, y - vision, cellSize + 2 * vision, cellSize + 2 * vision);
+
+        //Q-values for each action in the state
+        graphics.setFill(Color.BLACK);
+        double centerX = x + cellSize / 2;
+        double centerY = y + cellSize / 2;
+        graphics.fillText(frame.qValues[0], centerX, centerY - cellSize);
+        graphics.fillText(frame.qValues[1], centerX - cellSize, centerY);
+        graphics.fillText(frame.qValues[2], centerX + cellSize, centerY);
+        graphics.fillText(frame.qValues[3], centerX, centerY + cellSize);
+
+        //The area covers the vision, the strokes on its border and the text reaching out of it
+        double left = Math.max(0, Math.min(x - vision, centerX - cellSize) - 2);
+        double top = Math.max(0, Math.min(y - vision, centerY - cellSize) - TEXT_HEIGHT);
+        double right = Math.min(canvas.getWidth(), Math.max(x + cellSize + vision, centerX + cellSize) + TEXT_WIDTH);
+        double bottom = Math.min(canvas.getHeight(), Math.max(y + cellSize + vision, centerY + cellSize) + 4);
+
+        //Whole pixels so no edges of the old drawing are left behind
+        dirtyX = Math.floor(left);
+        dirtyY = Math.floor(top);
+        dirtyWidth = Math.ceil(right) - dirtyX;
+        dirtyHeight = Math.ceil(bottom) - dirtyY;
+    }
+}
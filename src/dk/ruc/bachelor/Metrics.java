@@ -0,0 +1,157 @@
+package dk.ruc.bachelor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what happens during training so throughput and convergence can be followed in long runs. Each training thread records into its own recorder with plain fields, and the recorder adds its counts to the shared striped counters at the end of each episode and every sample interval, so the training threads never wait for each other. The time spent in each part of a step is only measured on every sample interval'th step, because reading the clock costs more than the step itself
+ */
+class Metrics {
+
+    //Steps between timed steps
+    static final int SAMPLE_INTERVAL = 1024;
+
+    //The biggest number of states whose visits are tracked, which uses one bit per state
+    static final long VISITED_LIMIT = 1L << 26;
+
+    //Finished episodes and their steps
+    LongAdder episodes = new LongAdder();
+    LongAdder steps = new LongAdder();
+
+    //Number of episodes by steps to goal, bucket k holds the episodes with 2^k to 2^(k+1)-1 steps
+    LongAdder[] histogram = new LongAdder[64];
+
+    //Q-table updates and the sum of their absolute temporal difference errors
+    LongAdder updates = new LongAdder();
+    DoubleAdder tdError = new DoubleAdder();
+
+    //Timed steps and the nanoseconds spent finding the state, deciding the action and updating the Q-table in them
+    LongAdder samples = new LongAdder();
+    LongAdder findStateIdTime = new LongAdder();
+    LongAdder decideActionTime = new LongAdder();
+    LongAdder updateQTableTime = new LongAdder();
+
+    //One bit per state that has been visited, or null if there are too many states to track
+    AtomicLongArray visited;
+    LongAdder statesVisited = new LongAdder();
+
+    /**
+     * Constructor creates the counters
+     *
+     * @param numberOfStates Number of states of the tables being trained
+     */
+    Metrics(long numberOfStates) {
+        for (int i = 0; i < histogram.length; i++) histogram[i] = new LongAdder();
+        if (numberOfStates <= VISITED_LIMIT) visited = new AtomicLongArray((int) ((numberOfStates + 63) / 64));
+    }
+
+    /**
+     * Creates a recorder for one training thread
+     *
+     * @return Returns the recorder
+     */
+    Recorder recorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Marks a state as visited
+     *
+     * @param state The state
+     */
+    void visit(long state) {
+        if (visited == null) return;
+        int index = (int) (state >>> 6);
+        long bit = 1L << state;
+        long word = visited.get(index);
+        //Only states visited for the first time write to the shared array
+        while ((word & bit) == 0) {
+            if (visited.compareAndSet(index, word, word | bit)) {
+                statesVisited.increment();
+                return;
+            }
+            word = visited.get(index);
+        }
+    }
+
+    /**
+     * Records what one training thread does. It is not safe to share between threads
+     */
+    class Recorder {
+
+        //Steps since the last timed step
+        int stepsSinceSample;
+
+        //Counts that have not been added to the shared counters yet
+        long updates;
+        double tdError;
+
+        /**
+         * Counts a step and finds if it should be timed
+         *
+         * @return Returns true if the step should be timed
+         */
+        boolean sample() {
+            if (++stepsSinceSample < SAMPLE_INTERVAL) return false;
+            stepsSinceSample = 0;
+            return true;
+        }
+
+        /**
+         * Records the time of a timed step and adds the counts to the shared counters
+         *
+         * @param findStateId  Nanoseconds spent finding the state
+         * @param decideAction Nanoseconds spent deciding the action
+         * @param updateQTable Nanoseconds spent updating the Q-table
+         */
+        void time(long findStateId, long decideAction, long updateQTable) {
+            samples.increment();
+            findStateIdTime.add(findStateId);
+            decideActionTime.add(decideAction);
+            updateQTableTime.add(updateQTable);
+            flush();
+        }
+
+        /**
+         * Records a state the agent is in
+         *
+         * @param state The state
+         */
+        void visit(long state) {
+            Metrics.this.visit(state);
+        }
+
+        /**
+         * Records a Q-table update
+         *
+         * @param error The difference between the target and the old value
+         */
+        void update(double error) {
+            updates++;
+            tdError += Math.abs(error);
+        }
+
+        /**
+         * Records a finished episode and adds the counts to the shared counters
+         *
+         * @param episodeSteps Steps the episode took
+         */
+        void episode(int episodeSteps) {
+            episodes.increment();
+            steps.add(episodeSteps);
+            histogram[63 - Long.numberOfLeadingZeros(Math.max(1, episodeSteps))].increment();
+            flush();
+        }
+
+        /**
+         * Adds the counts to the shared counters
+         */
+        void flush() {
+            Metrics.this.updates.add(updates);
+            Metrics.this.tdError.add(tdError);
+            updates = 0;
+            tdError = 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dk.ruc.bachelor;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the metrics as one JSON object per line at a fixed interval. Rates and the temporal difference error are for the time since the previous line, so drops in throughput and the convergence of the Q-table can be seen while the training runs
+ */
+class MetricsReporter {
+
+    //The metrics to report and where to write them
+    Metrics metrics;
+    PrintStream out;
+
+    //The thread writing the lines
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //When the reporting started and the values at the previous line
+    long start, previousTime, previousEpisodes, previousSteps, previousUpdates;
+    double previousTdError;
+
+    /**
+     * Constructor starts writing lines
+     *
+     * @param metricsInput The metrics to report
+     * @param outInput     Where to write the lines
+     * @param interval     Milliseconds between lines
+     */
+    MetricsReporter(Metrics metricsInput, PrintStream outInput, long interval) {
+        metrics = metricsInput;
+        out = outInput;
+        start = System.nanoTime();
+        previousTime = start;
+        executor.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes one line with the current metrics
+     */
+    synchronized void report() {
+        long now = System.nanoTime();
+        long episodes = metrics.episodes.sum();
+        long steps = metrics.steps.sum();
+        long updates = metrics.updates.sum();
+        double tdError = metrics.tdError.sum();
+        double seconds = Math.max(1, now - previousTime) / 1e9;
+        long samples = Math.max(1, metrics.samples.sum());
+
+        StringBuilder line = new StringBuilder("{");
+        line.append("\"timeMs\":").append((now - start) / 1000000);
+        line.append(",\"episodes\":").append(episodes);
+        line.append(",\"steps\":").append(steps);
+        line.append(",\"episodesPerSecond\":").append(format((episodes - previousEpisodes) / seconds));
+        line.append(",\"stepsPerSecond\":").append(format((steps - previousSteps) / seconds));
+        line.append(",\"meanTdError\":").append(format(updates == previousUpdates ? 0 : (tdError - previousTdError) / (updates - previousUpdates)));
+        line.append(",\"statesVisited\":").append(metrics.visited == null ? -1 : metrics.statesVisited.sum());
+        line.append(",\"findStateIdNs\":").append(format((double) metrics.findStateIdTime.sum() / samples));
+        line.append(",\"decideActionNs\":").append(format((double) metrics.decideActionTime.sum() / samples));
+        line.append(",\"updateQTableNs\":").append(format((double) metrics.updateQTableTime.sum() / samples));
+
+        //The histogram ends at the last bucket with episodes in it
+        long[] buckets = new long[metrics.histogram.length];
+        int length = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = metrics.histogram[i].sum();
+            if (buckets[i] != 0) length = i + 1;
+        }
+        line.append(",\"stepsHistogram\":[");
+        for (int i = 0; i < length; i++) line.append(i == 0 ? "" : ",").append(buckets[i]);
+        line.append("]}");
+        out.println(line);
+        out.flush();
+
+        previousTime = now;
+        previousEpisodes = episodes;
+        previousSteps = steps;
+        previousUpdates = updates;
+        previousTdError = tdError;
+    }
+
+    /**
+     * Formats a number for JSON
+     *
+     * @param value The number
+     * @return Returns the number with at most one decimal
+     */
+    static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    /**
+     * Stops writing lines, writes a last line with the final metrics and closes the output unless it is the standard output
+     */
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+        if (out == System.out) out.flush();
+        else out.close();
+    }
+}
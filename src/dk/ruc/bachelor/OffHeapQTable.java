@@ -0,0 +1,158 @@
+package dk.ruc.bachelor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Q-table storing the values in a direct buffer outside the Java heap, so a big table does not add to garbage collection. The buffer may be read-only, e.g. a file mapped by a checkpoint, in which case the values are copied into a new buffer the first time one is written
+ */
+class OffHeapQTable extends QTable {
+
+    //The buffer holding the values
+    ByteBuffer buffer;
+
+    //Number of bytes used by a value
+    int valueSize;
+
+    //Used to access the values in the buffer for each precision
+    static final VarHandle INT_VALUE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    static final VarHandle FLOAT_VALUE = MethodHandles.byteBufferViewVarHandle(float[].class, ByteOrder.nativeOrder());
+    static final VarHandle DOUBLE_VALUE = MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Constructor allocates the buffer
+     *
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     * @param precision       The type of the values
+     */
+    OffHeapQTable(int numberOfStates, int numberOfActions, Precision precision) {
+        super(numberOfStates, numberOfActions, precision, Storage.OFF_HEAP);
+        valueSize = valueSize(precision);
+        buffer = ByteBuffer.allocateDirect(numberOfStates * numberOfActions * valueSize).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Constructor for a table using a buffer that already holds the values in the native byte order, e.g. a memory mapped file. A read-only buffer is copied on the first write
+     *
+     * @param bufferInput     The buffer holding the values
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     * @param precision       The type of the values
+     */
+    OffHeapQTable(ByteBuffer bufferInput, int numberOfStates, int numberOfActions, Precision precision) {
+        super(numberOfStates, numberOfActions, precision, Storage.OFF_HEAP);
+        valueSize = valueSize(precision);
+        if (bufferInput.capacity() != numberOfStates * numberOfActions * valueSize) throw new IllegalArgumentException("The buffer does not fit the table");
+        buffer = bufferInput;
+    }
+
+    /**
+     * Finds the number of bytes used by a value
+     *
+     * @param precision The type of the values
+     * @return Returns the number of bytes
+     */
+    static int valueSize(Precision precision) {
+        return precision == Precision.DOUBLE ? 8 : 4;
+    }
+
+    @Override
+    double get(long state, int action) {
+        int offset = index(state, action) * valueSize;
+        if (precision == Precision.INT) return (int) INT_VALUE.get(buffer, offset);
+        if (precision == Precision.FLOAT) return (float) FLOAT_VALUE.get(buffer, offset);
+        return (double) DOUBLE_VALUE.get(buffer, offset);
+    }
+
+    @Override
+    void set(long state, int action, double value) {
+        if (buffer.isReadOnly()) makeWritable();
+        setAt(index(state, action) * valueSize, value);
+    }
+
+    /**
+     * Sets a value at a position in the buffer
+     *
+     * @param offset The position in bytes
+     * @param value  The new value
+     */
+    void setAt(int offset, double value) {
+        if (precision == Precision.INT) INT_VALUE.set(buffer, offset, (int) value);
+        else if (precision == Precision.FLOAT) FLOAT_VALUE.set(buffer, offset, (float) value);
+        else DOUBLE_VALUE.set(buffer, offset, value);
+    }
+
+    @Override
+    double update(long state, int action, double target, double alpha) {
+        if (buffer.isReadOnly()) makeWritable();
+        int offset = index(state, action) * valueSize;
+        if (!shared) {
+            double oldValue = get(state, action);
+            setAt(offset, (1 - alpha) * oldValue + alpha * target);
+            return get(state, action) - oldValue;
+        }
+        //Retry until no other thread changed the value between reading and writing it
+        if (precision == Precision.INT) {
+            int oldValue, newValue;
+            do {
+                oldValue = (int) INT_VALUE.getVolatile(buffer, offset);
+                newValue = (int) ((1 - alpha) * oldValue + alpha * target);
+            } while (!INT_VALUE.compareAndSet(buffer, offset, oldValue, newValue));
+            return newValue - oldValue;
+        } else if (precision == Precision.FLOAT) {
+            float oldValue, newValue;
+            do {
+                oldValue = (float) FLOAT_VALUE.getVolatile(buffer, offset);
+                newValue = (float) ((1 - alpha) * oldValue + alpha * target);
+            } while (!FLOAT_VALUE.compareAndSet(buffer, offset, oldValue, newValue));
+            return newValue - oldValue;
+        } else {
+            double oldValue, newValue;
+            do {
+                oldValue = (double) DOUBLE_VALUE.getVolatile(buffer, offset);
+                newValue = (1 - alpha) * oldValue + alpha * target;
+            } while (!DOUBLE_VALUE.compareAndSet(buffer, offset, oldValue, newValue));
+            return newValue - oldValue;
+        }
+    }
+
+    /**
+     * Copies the values into a new direct buffer if the buffer is read-only. A shared table must be made writable before the threads use it, because the copy replaces the buffer
+     */
+    @Override
+    void makeWritable() {
+        if (!buffer.isReadOnly()) return;
+        ByteBuffer writable = ByteBuffer.allocateDirect(buffer.capacity()).order(ByteOrder.nativeOrder());
+        writable.put(buffer.duplicate().clear());
+        writable.clear();
+        buffer = writable;
+    }
+
+    @Override
+    QTable copy() {
+        OffHeapQTable copy = new OffHeapQTable((int) numberOfStates, numberOfActions, precision);
+        copy.buffer.put(buffer.duplicate().clear());
+        copy.buffer.clear();
+        return copy;
+    }
+
+    @Override
+    long memoryUsage() {
+        return buffer.capacity();
+    }
+
+    @Override
+    void fill(double value) {
+        if (buffer.isReadOnly()) makeWritable();
+        for (int offset = 0; offset < buffer.capacity(); offset += valueSize) setAt(offset, value);
+    }
+
+    @Override
+    String format(long state, int action) {
+        if (precision == Precision.INT) return "" + (int) get(state, action);
+        return "" + get(state, action);
+    }
+}
@@ -0,0 +1,286 @@
+package dk.ruc.bachelor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trains with several agents at once, one per thread. Every worker has its own logic and therefore its own copy of the map, while the Q and R tables are shared between them
+ */
+class ParallelTrainer extends TrainingEngine {
+
+    //The logics of the workers, the first one is also the logic of the engine
+    Logic[] workers;
+
+    /**
+     * Constructor creates the workers and lets them share the tables of the first worker
+     *
+     * @param threads Number of worker threads
+     */
+    ParallelTrainer(int threads) {
+        super(new Logic());
+        workers = new Logic[threads];
+        workers[0] = logic;
+        for (int i = 1; i < threads; i++) workers[i] = new Logic();
+        shareTables();
+    }
+
+    /**
+     * Lets all workers use the tables of the first worker
+     */
+    void shareTables() {
+        logic.Q.makeWritable();
+        logic.R.makeWritable();
+        logic.Q.shared = true;
+        logic.R.shared = true;
+        for (Logic worker : workers) {
+            worker.Q = logic.Q;
+            worker.R = logic.R;
+        }
+    }
+
+    /**
+     * Gives all workers the tables and values of a checkpoint. Sparse tables can not be shared between threads
+     *
+     * @param checkpoint The checkpoint to restore
+     */
+    @Override
+    void restore(Checkpoint checkpoint) {
+        if (checkpoint.Q.storage == QTable.Storage.SPARSE) throw new IllegalArgumentException("Sparse tables can not be shared between threads");
+        for (Logic worker : workers) checkpoint.restore(worker);
+        shareTables();
+    }
+
+    /**
+     * Sets the size and number of walls of the random maps of all workers
+     *
+     * @param columns Number of columns
+     * @param rows    Number of rows
+     * @param walls   Number of walls
+     */
+    @Override
+    void setRandomMapSize(int columns, int rows, int walls) {
+        for (Logic worker : workers) worker.setRandomMapSize(columns, rows, walls);
+    }
+
+    /**
+     * Sets how the random maps of all workers are made solvable
+     *
+     * @param solvableByConstruction If true the maps are built around a path from start to goal, otherwise maps are generated until one is solvable
+     */
+    @Override
+    void setSolvableByConstruction(boolean solvableByConstruction) {
+        for (Logic worker : workers) worker.setSolvableByConstruction(solvableByConstruction);
+    }
+
+    /**
+     * Sets the type of the values, how the tables of all workers are stored and how far the agents see. Sparse tables can not be shared between threads
+     *
+     * @param precision   The type of the values
+     * @param storage     How the values are stored
+     * @param visionRange How many fields the agents see in each direction
+     */
+    @Override
+    void configureTables(QTable.Precision precision, QTable.Storage storage, int visionRange) {
+        if (storage == QTable.Storage.SPARSE || visionRange > 1) throw new IllegalArgumentException("Sparse tables can not be shared between threads");
+        for (Logic worker : workers) {
+            worker.precision = precision;
+            worker.storage = storage;
+            worker.setVisionRange(visionRange);
+        }
+        shareTables();
+    }
+
+    /**
+     * Gives each worker its own random object split from the master, so the workers do not explore the same way and never wait for each other to get a random number. The order in which the threads update the shared tables still varies, so only the random numbers of each worker can be repeated
+     *
+     * @param master The random object the workers are split from
+     */
+    @Override
+    void setRandom(Rng master) {
+        for (Logic worker : workers) worker.setRandom(master.split());
+    }
+
+    /**
+     * Starts recording metrics of the training. Each worker records with its own recorder
+     *
+     * @param metrics The metrics to record into
+     */
+    @Override
+    void setMetrics(Metrics metrics) {
+        for (Logic worker : workers) worker.recorder = metrics.recorder();
+    }
+
+    /**
+     * Sets the monitor that stops the training when it has converged. All workers count the greedy actions they change and record their episodes in it
+     *
+     * @param monitorInput The monitor, or null to always train all episodes
+     */
+    @Override
+    void setConvergenceMonitor(ConvergenceMonitor monitorInput) {
+        monitor = monitorInput;
+        for (Logic worker : workers) worker.trackPolicy = monitor != null;
+    }
+
+    /**
+     * Turns planning on or off for all workers. Each worker learns its own model and plans into the shared Q-table
+     *
+     * @param mode   How the planning updates are picked, or null to turn planning off
+     * @param budget Number of planning updates after each real step
+     */
+    @Override
+    void setPlanning(Planner.Mode mode, int budget) {
+        for (Logic worker : workers) worker.planner = mode != null ? new Planner(mode, budget, worker.numberOfActions) : null;
+    }
+
+    /**
+     * Turns eligibility traces on or off for all workers, each worker keeps the traces of its own path
+     *
+     * @param lambda How slowly the traces fade between 0 and 1, or a negative value to turn them off
+     */
+    @Override
+    void setLambda(double lambda) {
+        for (Logic worker : workers) worker.traces = lambda >= 0 ? new EligibilityTraces(lambda) : null;
+    }
+
+    /**
+     * Sets how the workers explore. The first worker gets the strategy and the others get copies, since a strategy keeps its own values
+     *
+     * @param exploration The exploration strategy
+     */
+    @Override
+    void setExploration(ExplorationStrategy exploration) {
+        logic.exploration = exploration;
+        for (int i = 1; i < workers.length; i++) workers[i].exploration = exploration.copy();
+    }
+
+    /**
+     * Lets all workers share the watchdog, which counts the episodes stopped by any of them
+     *
+     * @param watchdog The watchdog, or null to let every episode run until the goal is reached
+     */
+    @Override
+    void setWatchdog(EpisodeWatchdog watchdog) {
+        for (Logic worker : workers) worker.watchdog = watchdog;
+    }
+
+    /**
+     * Stops all workers as soon as possible
+     */
+    @Override
+    void cancel() {
+        for (Logic worker : workers) worker.cancelled = true;
+    }
+
+    /**
+     * Lets all workers run again after they have been cancelled
+     */
+    @Override
+    void resume() {
+        for (Logic worker : workers) worker.cancelled = false;
+    }
+
+    /**
+     * Sets up experience replay for all workers. Each worker keeps its own transitions and replays them into the shared Q-table
+     *
+     * @param capacity The number of transitions kept by each worker, or 0 to turn replay off
+     * @param batch    The number of transitions replayed after every step
+     */
+    @Override
+    void setReplay(int capacity, int batch) {
+        for (Logic worker : workers) worker.setReplay(capacity, batch);
+    }
+
+    /**
+     * Sets the alpha and gamma values of all workers
+     *
+     * @param alpha The learning rate
+     * @param gamma The discount factor
+     */
+    @Override
+    void setParameters(double alpha, double gamma) {
+        for (Logic worker : workers) {
+            worker.alpha = alpha;
+            worker.gamma = gamma;
+        }
+    }
+
+    /**
+     * Trains all workers on the map. The episodes are split evenly between the workers. Checkpoints are taken by the first worker while the others keep training, and the first worker also calls the episode listener. Every worker records its episodes in the convergence monitor, so an episode of any worker that changes the policy starts the window over, and the monitor stops all workers when the training has converged. If a worker fails or the calling thread is interrupted the other workers are stopped, and the episodes and steps are only added up once every worker has finished
+     *
+     * @param map          What the map should be
+     * @param episodeCount Number of episodes to train in total
+     */
+    @Override
+    void train(int map, long episodeCount) {
+        long start = System.nanoTime();
+        long workerCheckpointEvery = Math.max(1, checkpointEvery / workers.length);
+        ExecutorService executor = Executors.newFixedThreadPool(workers.length);
+        long[] workerEpisodeCounts = new long[workers.length];
+        long[] workerStepCounts = new long[workers.length];
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < workers.length; i++) {
+                Logic worker = workers[i];
+                int workerIndex = i;
+                long workerEpisodes = episodeCount / workers.length + (i < episodeCount % workers.length ? 1 : 0);
+                Runnable task = () -> {
+                    worker.setMap(map);
+                    for (long j = 0; j < workerEpisodes && !worker.cancelled; j++) {
+                        if (monitor != null && monitor.converged()) break;
+                        int episodeSteps = worker.runEpisode();
+                        if (episodeSteps < 0) break;
+                        workerStepCounts[workerIndex] += episodeSteps;
+                        workerEpisodeCounts[workerIndex]++;
+                        if (worker == logic) {
+                            lastEpisodeStopped = worker.episodeStopped;
+                            if (!lastEpisodeStopped) lastEpisodeSteps = episodeSteps;
+                        }
+                        if (worker == logic && checkpointWriter != null && (j + 1) % workerCheckpointEvery == 0) checkpointWriter.checkpoint(logic);
+                        if (worker == logic && episodeListener != null) episodeListener.run();
+                        if (monitor != null && worker.episodeStopped) monitor.recordStopped();
+                        else if (monitor != null) monitor.record(worker.policyChanges, worker.maxDelta, episodeSteps);
+                    }
+                };
+                results.add(executor.submit(task));
+            }
+            for (Future<?> result : results) result.get();
+        } catch (InterruptedException e) {
+            stopWorkers(executor);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            stopWorkers(executor);
+            throw new IllegalStateException("Training failed", e.getCause());
+        } finally {
+            executor.shutdown();
+            for (int i = 0; i < workers.length; i++) {
+                episodes += workerEpisodeCounts[i];
+                steps += workerStepCounts[i];
+            }
+            trainingTime += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Cancels all workers and waits until they have finished, so no worker keeps training the shared tables after train returns. The wait is not cut short by an interrupt, which is kept for the caller instead
+     *
+     * @param executor The threads of the workers
+     */
+    void stopWorkers(ExecutorService executor) {
+        cancel();
+        executor.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
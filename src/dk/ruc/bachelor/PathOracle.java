@@ -0,0 +1,106 @@
+package dk.ruc.bachelor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Knows the shortest path to the goal on any map, so the steps an agent takes can be compared with the fewest possible. The distances from every field to the goal are found by filling the map from the goal, and they are kept for the maps used most recently, found by the fingerprint of the map. Evaluating many episodes on the same maps then only fills each map once. It is safe to share between threads
+ */
+class PathOracle {
+
+    /**
+     * The distances of one map. The size is kept to tell grids with the same fingerprint apart if they differ in size
+     */
+    static class DistanceField {
+
+        //Size of the map
+        int columns, rows;
+
+        //Steps to the goal from each field stored as x * rows + y, -1 if the goal can not be reached
+        int[] distances;
+
+        /**
+         * Finds the steps to the goal from a field
+         *
+         * @param x X coordinate of the field
+         * @param y Y coordinate of the field
+         * @return Returns the fewest steps or -1 if the goal can not be reached
+         */
+        int get(int x, int y) {
+            return distances[x * rows + y];
+        }
+    }
+
+    //The number of maps kept
+    int capacity;
+
+    //The distances by fingerprint, in the order they were last used
+    Map<Long, DistanceField> cache;
+
+    //Lookups that found the map and lookups that had to fill it
+    long hits, misses;
+
+    //The fill used for maps that are not kept
+    FloodFill floodFill = new FloodFill();
+
+    /**
+     * Constructor creates an empty cache
+     *
+     * @param capacityInput The number of maps to keep
+     */
+    PathOracle(int capacityInput) {
+        if (capacityInput < 1) throw new IllegalArgumentException("The oracle must keep at least one map");
+        capacity = capacityInput;
+        cache = new LinkedHashMap<Long, DistanceField>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DistanceField> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Finds the distances of a map, filling the map if it is not kept already
+     *
+     * @param map The map
+     * @return Returns the distances
+     */
+    synchronized DistanceField distances(Grid map) {
+        long fingerprint = map.fingerprint();
+        DistanceField field = cache.get(fingerprint);
+        if (field != null && field.columns == map.columns && field.rows == map.rows) {
+            hits++;
+            return field;
+        }
+        misses++;
+        field = new DistanceField();
+        field.columns = map.columns;
+        field.rows = map.rows;
+        field.distances = floodFill.distances(map);
+        cache.put(fingerprint, field);
+        return field;
+    }
+
+    /**
+     * Finds the fewest steps from the start field to the goal
+     *
+     * @param map The map
+     * @return Returns the fewest steps or -1 if the goal can not be reached
+     */
+    int shortestPath(Grid map) {
+        return distances(map).get(1, 1);
+    }
+
+    /**
+     * Finds how many more steps an episode took than the shortest path, relative to the shortest path
+     *
+     * @param map   The map
+     * @param steps Steps the episode took from the start field
+     * @return Returns 0 for an optimal episode, 1 for an episode twice as long and so on, or NaN if the goal can not be reached
+     */
+    double optimalityGap(Grid map, int steps) {
+        int shortest = shortestPath(map);
+        if (shortest <= 0) return Double.NaN;
+        return (double) (steps - shortest) / shortest;
+    }
+}
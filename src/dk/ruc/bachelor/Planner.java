@@ -0,0 +1,118 @@
+package dk.ruc.bachelor;
+
+/**
+ * Plans with a learned model of the maze, so every real step is followed by a number of cheap updates that need no map and no agent. Dyna-Q replays entries of the model picked at random. Prioritized sweeping queues the entries by how much their value would change and updates the biggest changes first, and when a state changes the entries leading to it are queued, so the reward spreads back from the goal without walking there again. The updates are the same Q-learning update as a real step, so int tables truncate them the same way
+ */
+class Planner {
+
+    /**
+     * How the updates are picked
+     */
+    enum Mode {DYNA, PRIORITIZED}
+
+    //How the updates are picked and how many are done after each real step
+    Mode mode;
+    int budget;
+
+    //Entries are only queued if their value would change by more than this, in the units of the Q-values
+    double threshold = 1;
+
+    //The learned model and the entries waiting to be updated
+    PlanningModel model;
+    IndexedPriorityQueue queue = new IndexedPriorityQueue();
+
+    //Number of planning updates done
+    long updates;
+
+    /**
+     * Constructor sets how the updates are picked and how many are done after each real step
+     *
+     * @param modeInput            How the updates are picked
+     * @param budgetInput          Number of planning updates after each real step
+     * @param numberOfActionsInput Number of actions in each state
+     */
+    Planner(Mode modeInput, int budgetInput, int numberOfActionsInput) {
+        if (budgetInput < 0) throw new IllegalArgumentException("The planning budget can not be negative");
+        mode = modeInput;
+        budget = budgetInput;
+        model = new PlanningModel(numberOfActionsInput);
+    }
+
+    /**
+     * Learns a real step in the model and plans. The real step has already updated the Q-table
+     *
+     * @param logic     The logic with the tables
+     * @param oldState  The state the action was taken in
+     * @param oldAction The action
+     * @param reward    The reward of the action
+     * @param state     The state it led to
+     */
+    void plan(Logic logic, long oldState, int oldAction, double reward, long state) {
+        int id = model.observe(oldState, oldAction, reward, state);
+        if (mode == Mode.DYNA) {
+            for (int i = 0; i < budget; i++) backup(logic, logic.random.nextInt(model.size));
+            return;
+        }
+
+        //The old state changed, so the entries leading to it may change as well
+        queue(logic, id);
+        queuePredecessors(logic, oldState);
+        for (int i = 0; i < budget && !queue.isEmpty(); i++) {
+            int entry = queue.pop();
+            backup(logic, entry);
+            queuePredecessors(logic, model.states[entry]);
+        }
+    }
+
+    /**
+     * Finds the target of an entry with the current Q-values
+     *
+     * @param logic The logic with the tables
+     * @param id    The entry
+     * @return Returns the reward plus the discounted value of the best action of the state it led to
+     */
+    double target(Logic logic, int id) {
+        long nextState = model.nextStates[id];
+        return model.rewards[id] + logic.gamma * logic.Q.get(nextState, logic.maxQ(nextState));
+    }
+
+    /**
+     * Updates the Q-value of an entry
+     *
+     * @param logic The logic with the tables
+     * @param id    The entry
+     */
+    void backup(Logic logic, int id) {
+        logic.Q.update(model.states[id], model.actions[id], target(logic, id), logic.alpha);
+        updates++;
+    }
+
+    /**
+     * Queues an entry if its value would change by more than the threshold
+     *
+     * @param logic The logic with the tables
+     * @param id    The entry
+     */
+    void queue(Logic logic, int id) {
+        double priority = Math.abs(target(logic, id) - logic.Q.get(model.states[id], model.actions[id]));
+        if (priority > threshold) queue.push(id, priority);
+    }
+
+    /**
+     * Queues the entries that lead to a state
+     *
+     * @param logic The logic with the tables
+     * @param state The state
+     */
+    void queuePredecessors(Logic logic, long state) {
+        for (int id = model.firstPredecessor(state); id >= 0; id = model.nextPredecessors[id]) queue(logic, id);
+    }
+
+    /**
+     * Forgets the model, e.g. when the tables are replaced
+     */
+    void reset() {
+        model.clear();
+        queue.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package dk.ruc.bachelor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the parts of planning that are easy to get wrong without noticing, since a broken planner still trains, only slower. The priority queue must pop the biggest priority first also after priorities are raised, the model must move an entry to the predecessors of its new state when the outcome of its action changes, and prioritized sweeping must spread a reward back along a chain of states in one walk. Each check prints ok or throws an exception saying what was wrong
+ */
+public class PlanningCheck {
+
+    //Length of the chain walked once to the reward
+    static final int CHAIN_LENGTH = 10;
+
+    //Reward at the end of the chain
+    static final double CHAIN_REWARD = 100;
+
+    public static void main(String[] args) {
+        checkQueueOrder();
+        System.out.println("Priority queue push, raise and pop order: ok");
+        checkModelRelink();
+        System.out.println("Model predecessor relinking: ok");
+        checkChain();
+        System.out.println("Prioritized sweeping along a chain of " + CHAIN_LENGTH + " states: ok");
+    }
+
+    /**
+     * Checks that the queue pops the entries by falling priority, that a raised priority moves an entry up, that a lower priority does not move it down, and that the queue grows past its first capacity
+     */
+    static void checkQueueOrder() {
+        IndexedPriorityQueue queue = new IndexedPriorityQueue();
+        queue.push(1, 5);
+        queue.push(2, 1);
+        queue.push(3, 3);
+        queue.push(4, 2);
+        queue.push(2, 10);
+        queue.push(3, 0.5);
+        int[] expected = {2, 1, 3, 4};
+        for (int id : expected) check(queue.pop() == id, "The queue did not pop " + id + " in order");
+        check(queue.isEmpty(), "The queue is not empty after popping every entry");
+
+        //Ids past the first capacity, pushed in rising order so every push moves to the top
+        for (int id = 0; id < 1000; id++) queue.push(id * 7, id);
+        for (int id = 999; id >= 0; id--) check(queue.pop() == id * 7, "The grown queue did not pop " + id * 7 + " in order");
+
+        queue.push(5, 1);
+        queue.clear();
+        check(queue.isEmpty() && queue.positions[5] == -1, "Clear left an entry in the queue");
+        queue.push(5, 2);
+        check(queue.pop() == 5 && queue.isEmpty(), "An entry could not be queued again after clear");
+        boolean thrown = false;
+        try {
+            queue.pop();
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        check(thrown, "Popping an empty queue did not fail");
+    }
+
+    /**
+     * Checks that an entry whose action leads to a new state is removed from the predecessors of the old state and added to those of the new state, whether it is first, in the middle or last in the list, and that a new reward with the same outcome keeps the lists
+     */
+    static void checkModelRelink() {
+        PlanningModel model = new PlanningModel(4);
+        int first = model.observe(1, 0, 0, 100);
+        int middle = model.observe(2, 1, 0, 100);
+        int last = model.observe(3, 2, 0, 100);
+        checkPredecessors(model, 100, last, middle, first);
+
+        check(model.observe(2, 1, 5, 100) == middle && model.rewards[middle] == 5, "A new reward did not update the entry");
+        checkPredecessors(model, 100, last, middle, first);
+
+        check(model.observe(2, 1, 0, 200) == middle, "Relinking gave the entry a new id");
+        checkPredecessors(model, 100, last, first);
+        checkPredecessors(model, 200, middle);
+
+        model.observe(3, 2, 0, 200);
+        checkPredecessors(model, 100, first);
+        checkPredecessors(model, 200, last, middle);
+
+        model.observe(1, 0, 0, 200);
+        checkPredecessors(model, 100);
+        checkPredecessors(model, 200, first, last, middle);
+        check(model.size == 3, "Relinking added entries to the model");
+
+        //Enough entries to grow the arrays and the hash tables
+        for (int state = 0; state < 5000; state++) model.observe(1000 + state, state % 4, 0, 10000 + state / 4);
+        for (int state = 0; state < 5000; state++) {
+            int id = model.ids.get((1000 + state) * 4L + state % 4);
+            check(id >= 0 && model.states[id] == 1000 + state && model.nextStates[id] == 10000 + state / 4, "The grown model lost the entry of state " + (1000 + state));
+        }
+        checkPredecessors(model, 200, first, last, middle);
+    }
+
+    /**
+     * Checks that the entries leading to a state are exactly the expected ones, in the order they are linked
+     *
+     * @param model    The model
+     * @param state    The state
+     * @param expected The entries expected to lead to the state
+     */
+    static void checkPredecessors(PlanningModel model, long state, int... expected) {
+        List<Integer> found = new ArrayList<>();
+        for (int id = model.firstPredecessor(state); id >= 0 && found.size() <= model.size; id = model.nextPredecessors[id]) found.add(id);
+        List<Integer> wanted = new ArrayList<>();
+        for (int id : expected) wanted.add(id);
+        check(found.equals(wanted), "The entries leading to state " + state + " are " + found + " instead of " + wanted);
+    }
+
+    /**
+     * Walks a chain of states once with the reward on the last step and checks that prioritized sweeping has given every state of the chain its discounted value. With an alpha of 1 and double values a single backup of each state is exact, so the chain needs one planning update per state before the last one
+     */
+    static void checkChain() {
+        Logic logic = new Logic();
+        logic.precision = QTable.Precision.DOUBLE;
+        logic.initializeTables();
+        logic.alpha = 1;
+        logic.gamma = 0.9;
+        Planner planner = new Planner(Planner.Mode.PRIORITIZED, CHAIN_LENGTH, logic.numberOfActions);
+        planner.threshold = 1e-9;
+        for (int state = 0; state < CHAIN_LENGTH; state++) {
+            double reward = state == CHAIN_LENGTH - 1 ? CHAIN_REWARD : 0;
+            logic.Q.update(state, 1, reward + logic.gamma * logic.Q.get(state + 1, logic.maxQ(state + 1)), logic.alpha);
+            planner.plan(logic, state, 1, reward, state + 1);
+        }
+        for (int state = 0; state < CHAIN_LENGTH; state++) {
+            double expected = CHAIN_REWARD * Math.pow(logic.gamma, CHAIN_LENGTH - 1 - state);
+            check(Math.abs(logic.Q.get(state, 1) - expected) < 1e-9, "State " + state + " of the chain has the value " + logic.Q.get(state, 1) + " instead of " + expected);
+        }
+        check(planner.updates == CHAIN_LENGTH - 1, "The chain took " + planner.updates + " planning updates instead of " + (CHAIN_LENGTH - 1));
+    }
+
+    /**
+     * Fails the check if a condition does not hold
+     *
+     * @param condition The condition
+     * @param message   What was wrong if the condition does not hold
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) throw new IllegalStateException(message);
+    }
+}
@@ -0,0 +1,196 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+
+/**
+ * A learned model of the maze: for every state and action the agent has taken, the state it led to and the reward. The maze itself is deterministic, but many places share a state because the agent only sees the fields around it, so the model keeps the last outcome seen. Every state-action pair gets an entry id in the order it was first seen, and the entries are stored in parallel arrays by id, so they can be sampled uniformly and queued by id. The entries that lead to each state are linked into a list, so the predecessors of a state are found without scanning the model
+ */
+class PlanningModel {
+
+    /**
+     * A hash table from long keys to int values with open addressing and no boxing
+     */
+    static class LongIntMap {
+
+        //The keys plus one, 0 marks an empty slot
+        long[] keys = new long[1024];
+        int[] values = new int[1024];
+        int size;
+
+        /**
+         * Finds the slot of a key, or the empty slot it should be stored in
+         *
+         * @param key The key
+         * @return Returns the slot
+         */
+        int slot(long key) {
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+            while (keys[slot] != 0 && keys[slot] != key + 1) slot = (slot + 1) & (keys.length - 1);
+            return slot;
+        }
+
+        /**
+         * Gets the value of a key
+         *
+         * @param key The key
+         * @return Returns the value or -1 if the key is not stored
+         */
+        int get(long key) {
+            int slot = slot(key);
+            return keys[slot] != 0 ? values[slot] : -1;
+        }
+
+        /**
+         * Stores the value of a key
+         *
+         * @param key   The key
+         * @param value The value
+         */
+        void put(long key, int value) {
+            int slot = slot(key);
+            if (keys[slot] == 0) {
+                //Keep the table at most half full so the searches stay short
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    slot = slot(key);
+                }
+                keys[slot] = key + 1;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        /**
+         * Doubles the number of slots and moves the keys to their new slots
+         */
+        void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = slot(oldKeys[i] - 1);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        /**
+         * Removes all keys
+         */
+        void clear() {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+    }
+
+    //Number of actions in each state
+    int numberOfActions;
+
+    //The entries by id: the state and action, the state it led to and the reward
+    long[] states = new long[1024];
+    byte[] actions = new byte[1024];
+    long[] nextStates = new long[1024];
+    double[] rewards = new double[1024];
+    int size;
+
+    //The next entry that leads to the same state, -1 at the end of the list
+    int[] nextPredecessors = new int[1024];
+
+    //The entry id of each state and action, and the first entry leading to each state
+    LongIntMap ids = new LongIntMap();
+    LongIntMap firstPredecessors = new LongIntMap();
+
+    /**
+     * Constructor sets the number of actions
+     *
+     * @param numberOfActionsInput Number of actions in each state
+     */
+    PlanningModel(int numberOfActionsInput) {
+        numberOfActions = numberOfActionsInput;
+    }
+
+    /**
+     * Stores what an action led to, replacing what it led to before
+     *
+     * @param state     The state the action was taken in
+     * @param action    The action
+     * @param reward    The reward of the action
+     * @param nextState The state it led to
+     * @return Returns the id of the entry
+     */
+    int observe(long state, int action, double reward, long nextState) {
+        long key = state * numberOfActions + action;
+        int id = ids.get(key);
+        if (id < 0) {
+            id = size;
+            if (size == states.length) grow();
+            states[id] = state;
+            actions[id] = (byte) action;
+            ids.put(key, id);
+            size++;
+        } else if (nextStates[id] != nextState) {
+            unlink(id);
+        } else {
+            rewards[id] = reward;
+            return id;
+        }
+        nextStates[id] = nextState;
+        rewards[id] = reward;
+        nextPredecessors[id] = firstPredecessors.get(nextState);
+        firstPredecessors.put(nextState, id);
+        return id;
+    }
+
+    /**
+     * Removes an entry from the list of the state it leads to
+     *
+     * @param id The entry
+     */
+    void unlink(int id) {
+        long nextState = nextStates[id];
+        int first = firstPredecessors.get(nextState);
+        if (first == id) {
+            firstPredecessors.put(nextState, nextPredecessors[id]);
+            return;
+        }
+        for (int entry = first; entry >= 0; entry = nextPredecessors[entry]) {
+            if (nextPredecessors[entry] == id) {
+                nextPredecessors[entry] = nextPredecessors[id];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the first entry that leads to a state. The rest are found with nextPredecessors
+     *
+     * @param state The state
+     * @return Returns the id of the entry or -1 if no entry leads to the state
+     */
+    int firstPredecessor(long state) {
+        return firstPredecessors.get(state);
+    }
+
+    /**
+     * Doubles the room for entries
+     */
+    void grow() {
+        int length = states.length * 2;
+        states = Arrays.copyOf(states, length);
+        actions = Arrays.copyOf(actions, length);
+        nextStates = Arrays.copyOf(nextStates, length);
+        rewards = Arrays.copyOf(rewards, length);
+        nextPredecessors = Arrays.copyOf(nextPredecessors, length);
+    }
+
+    /**
+     * Removes all entries
+     */
+    void clear() {
+        size = 0;
+        ids.clear();
+        firstPredecessors.clear();
+    }
+}
@@ -0,0 +1,223 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+
+/**
+ * A trained agent compiled into one byte per state, so running it is only a table lookup per step. The low 4 bits of a byte are the actions with the highest value and the high 4 bits are the valid actions. When several actions are equally good one is picked the same way decideAction does, so the compiled agent behaves like the trained one. The rewards of the actions that reach the goal are part of the values, because the logic sets them before deciding when it plays. Policies of dense tables store every state, policies of sparse tables only store the states in the tables and compute the rest from the state id
+ */
+class Policy {
+
+    //How far the agent sees and the number of fields it sees
+    int visionRange;
+    int digits;
+
+    //The reward for reaching the goal, which decides if states that are not stored prefer the goal
+    int rewardValue;
+
+    //The divisor that finds the field seen in the direction of each action from a state id
+    long[] actionDivisors = new long[4];
+
+    //One byte per state for dense tables
+    byte[] actions;
+
+    //The stored states plus one and their bytes for sparse tables, 0 marks an empty slot
+    long[] keys;
+    byte[] values;
+
+    /**
+     * Constructor finds where the fields next to the agent are in a state id
+     *
+     * @param visionRangeInput How far the agent sees
+     */
+    Policy(int visionRangeInput) {
+        visionRange = visionRangeInput;
+        digits = (2 * visionRange + 1) * (2 * visionRange + 1) - 1;
+        int digit = 0;
+        for (int i = -visionRange; i <= visionRange; i++) {
+            for (int j = -visionRange; j <= visionRange; j++) {
+                if (i == 0 && j == 0) continue;
+                for (int action = 0; action < Logic.DX.length; action++) {
+                    if (Logic.DX[action] == i && Logic.DY[action] == j) actionDivisors[action] = power(3, digits - 1 - digit);
+                }
+                digit++;
+            }
+        }
+    }
+
+    /**
+     * Compiles the tables of a logic into a policy
+     *
+     * @param logic The trained logic
+     * @return Returns the policy
+     */
+    static Policy compile(Logic logic) {
+        Policy policy = new Policy(logic.visionRange);
+        policy.rewardValue = logic.rewardValue;
+        if (logic.Q instanceof SparseQTable) {
+            //Only states in one of the tables can have values that differ from the rest
+            SparseQTable Q = (SparseQTable) logic.Q;
+            SparseQTable R = (SparseQTable) logic.R;
+            int capacity = Integer.highestOneBit(Math.max(1, Q.size + R.size)) * 4;
+            policy.keys = new long[capacity];
+            policy.values = new byte[capacity];
+            for (long key : Q.keys) {
+                if (key != 0) policy.put(key - 1, policy.compileState(key - 1, logic));
+            }
+            for (long key : R.keys) {
+                if (key != 0) policy.put(key - 1, policy.compileState(key - 1, logic));
+            }
+        } else {
+            policy.actions = new byte[(int) logic.numberOfStates];
+            for (int state = 0; state < policy.actions.length; state++) policy.actions[state] = policy.compileState(state, logic);
+        }
+        return policy;
+    }
+
+    /**
+     * Finds the best and the valid actions of a state
+     *
+     * @param state The state
+     * @param logic The trained logic
+     * @return Returns the best actions in the low 4 bits and the valid actions in the high 4 bits
+     */
+    byte compileState(long state, Logic logic) {
+        int validActions = 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        double[] values = new double[logic.numberOfActions];
+        for (int action = 0; action < logic.numberOfActions; action++) {
+            int field = field(state, action);
+            if (field == 1) continue;
+            validActions |= 1 << action;
+            values[action] = (field == 2 ? logic.rewardValue : logic.R.get(state, action)) + logic.Q.get(state, action);
+            bestValue = Math.max(bestValue, values[action]);
+        }
+        int bestActions = 0;
+        for (int action = 0; action < logic.numberOfActions; action++) {
+            if ((validActions >> action & 1) != 0 && values[action] == bestValue) bestActions |= 1 << action;
+        }
+        return (byte) (validActions << 4 | bestActions);
+    }
+
+    /**
+     * Finds the byte of a state that is not stored in a sparse policy. All its values are the same except the rewards of the actions that reach the goal
+     *
+     * @param state The state
+     * @return Returns the best actions in the low 4 bits and the valid actions in the high 4 bits
+     */
+    int unstoredState(long state) {
+        int validActions = 0;
+        int goalActions = 0;
+        for (int action = 0; action < actionDivisors.length; action++) {
+            int field = field(state, action);
+            if (field != 1) validActions |= 1 << action;
+            if (field == 2) goalActions |= 1 << action;
+        }
+        int bestActions = validActions;
+        if (rewardValue > 0 && goalActions != 0) bestActions = goalActions;
+        else if (rewardValue < 0 && goalActions != validActions) bestActions = validActions & ~goalActions;
+        return validActions << 4 | bestActions;
+    }
+
+    /**
+     * Finds what the agent sees in the direction of an action
+     *
+     * @param state  The state id
+     * @param action The action
+     * @return Returns 0 for empty fields, 1 for walls and 2 for the goal
+     */
+    int field(long state, int action) {
+        return (int) (state / actionDivisors[action] % 3);
+    }
+
+    /**
+     * Stores the byte of a state in a sparse policy
+     *
+     * @param state The state
+     * @param value The byte
+     */
+    void put(long state, byte value) {
+        int slot = slot(state);
+        keys[slot] = state + 1;
+        values[slot] = value;
+    }
+
+    /**
+     * Finds the slot of a state in a sparse policy, or the empty slot it should be stored in
+     *
+     * @param state The state
+     * @return Returns the slot
+     */
+    int slot(long state) {
+        int slot = (int) ((state * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+        while (keys[slot] != 0 && keys[slot] != state + 1) slot = (slot + 1) & (keys.length - 1);
+        return slot;
+    }
+
+    /**
+     * Decides the action in a state
+     *
+     * @param state  The state
+     * @param random Generator used when several actions are equally good
+     * @return Returns the action
+     */
+    int action(long state, Rng random) {
+        int entry;
+        if (actions != null) entry = actions[(int) state];
+        else {
+            int slot = slot(state);
+            entry = keys[slot] != 0 ? values[slot] : unstoredState(state);
+        }
+        int bestActions = entry & 15;
+        if ((bestActions & bestActions - 1) == 0) return Integer.numberOfTrailingZeros(bestActions);
+
+        //Like decideAction, a random valid action is kept if it is one of the best and otherwise the first best action is taken
+        int validActions = entry >>> 4 & 15;
+        for (int i = random.nextInt(Integer.bitCount(validActions)); i > 0; i--) validActions &= validActions - 1;
+        int picked = validActions & -validActions;
+        return Integer.numberOfTrailingZeros((picked & bestActions) != 0 ? picked : bestActions);
+    }
+
+    /**
+     * Runs one episode on a map from the start field
+     *
+     * @param map      The map
+     * @param index    The state index of the map, with the same vision range as the policy
+     * @param random   Generator used when several actions are equally good
+     * @param maxSteps Steps before the episode is given up, since a policy can walk in circles
+     * @return Returns the number of steps to the goal or -1 if the goal was not reached
+     */
+    int run(Grid map, StateIndex index, Rng random, int maxSteps) {
+        int x = 1;
+        int y = 1;
+        for (int steps = 1; steps <= maxSteps; steps++) {
+            int action = action(index.get(x, y), random);
+            x += Logic.DX[action];
+            y += Logic.DY[action];
+            if (map.get(x, y) == 2) return steps;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the number of states stored
+     *
+     * @return Returns the number of bytes used for states
+     */
+    int size() {
+        if (actions != null) return actions.length;
+        return (int) Arrays.stream(keys).filter(key -> key != 0).count();
+    }
+
+    /**
+     * Raises a number to a power
+     *
+     * @param base     The number
+     * @param exponent The power
+     * @return Returns the number raised to the power
+     */
+    static long power(long base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) result *= base;
+        return result;
+    }
+}
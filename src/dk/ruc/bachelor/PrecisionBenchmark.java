@@ -0,0 +1,48 @@
+package dk.ruc.bachelor;
+
+/**
+ * Benchmark that compares int, float and double Q-values on every map of the map library. The int tables truncate every update, so small values are lost, which is why the reward is so big. For each precision and map a number of seeded agents are trained until the convergence monitor stops them, and the episodes it took, the steps of the last episode and the memory of the Q and R tables are printed
+ */
+public class PrecisionBenchmark {
+
+    //Number of seeds trained for each precision and map
+    static final int SEEDS = 5;
+
+    //Episodes before a training is given up and counted as not converged
+    static final int MAX_EPISODES = 5000;
+
+    //Episodes in a row without policy changes before the training counts as converged
+    static final int CONVERGENCE_WINDOW = 50;
+
+    //Steps before an episode is stopped, so a policy walking in circles can not hold up the benchmark. A stopped episode starts the convergence window over, so a policy that only stopped changing because every episode is stopped does not converge
+    static final int MAX_EPISODE_STEPS = 20000;
+
+    public static void main(String[] args) {
+        System.out.println("precision\tmap\tconverged\tepisodes\tsteps\tmemoryBytes\ttimeMs");
+        for (QTable.Precision precision : QTable.Precision.values()) {
+            for (int map = 0; map < 8; map++) {
+                int converged = 0;
+                long convergedEpisodes = 0;
+                long lastSteps = 0;
+                long memory = 0;
+                long start = System.nanoTime();
+                for (int seed = 0; seed < SEEDS; seed++) {
+                    TrainingEngine engine = new TrainingEngine(new Logic());
+                    engine.setSeed(seed);
+                    engine.configureTables(precision, QTable.Storage.HEAP, 1);
+                    engine.setConvergenceMonitor(new ConvergenceMonitor(CONVERGENCE_WINDOW));
+                    engine.setWatchdog(new EpisodeWatchdog(MAX_EPISODE_STEPS, 0));
+                    engine.train(map, MAX_EPISODES);
+                    if (engine.monitor.converged()) {
+                        converged++;
+                        convergedEpisodes += engine.monitor.convergedEpisode;
+                    }
+                    lastSteps += engine.lastEpisodeSteps;
+                    memory = engine.logic.Q.memoryUsage() + engine.logic.R.memoryUsage();
+                }
+                String episodes = converged == 0 ? "-" : "" + convergedEpisodes / converged;
+                System.out.printf("%s\t%s\t%d/%d\t%s\t%d\t%d\t%d%n", precision, StepBenchmark.MAP_NAMES[map], converged, SEEDS, episodes, lastSteps / SEEDS, memory, (System.nanoTime() - start) / 1000000);
+            }
+        }
+    }
+}
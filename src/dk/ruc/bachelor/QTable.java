@@ -0,0 +1,140 @@
+package dk.ruc.bachelor;
+
+/**
+ * A table with a value for every state and action. It is used for both the Q-table and the R-table. The values are stored row by row in one contiguous array, so the values of a state are next to each other
+ */
+abstract class QTable {
+
+    /**
+     * The type of the values stored in the table
+     */
+    enum Precision {INT, FLOAT, DOUBLE}
+
+    /**
+     * Where the values are stored. Heap and off-heap tables have room for every state while sparse tables only store the states that are visited
+     */
+    enum Storage {HEAP, OFF_HEAP, SPARSE}
+
+    //The number of states and actions
+    long numberOfStates;
+    int numberOfActions;
+
+    //The type of the values and how they are stored
+    Precision precision;
+    Storage storage;
+
+    //True if the table is updated from several threads, the updates are then done atomically
+    boolean shared = false;
+
+    /**
+     * Constructor sets the size of the table
+     *
+     * @param numberOfStatesInput  Number of states
+     * @param numberOfActionsInput Number of actions in each state
+     * @param precisionInput       The type of the values
+     * @param storageInput         How the values are stored
+     */
+    QTable(long numberOfStatesInput, int numberOfActionsInput, Precision precisionInput, Storage storageInput) {
+        numberOfStates = numberOfStatesInput;
+        numberOfActions = numberOfActionsInput;
+        precision = precisionInput;
+        storage = storageInput;
+    }
+
+    /**
+     * Creates a table
+     *
+     * @param precision       The type of the values
+     * @param storage         How the values should be stored
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     * @return Returns the new table with all values set to 0
+     */
+    static QTable create(Precision precision, Storage storage, long numberOfStates, int numberOfActions) {
+        if (storage == Storage.SPARSE) return new SparseQTable(numberOfStates, numberOfActions, precision);
+        if (numberOfStates > Integer.MAX_VALUE / 8 / numberOfActions) throw new IllegalArgumentException("Too many states for a dense table, use a sparse table instead");
+        int states = (int) numberOfStates;
+        if (storage == Storage.OFF_HEAP) return new OffHeapQTable(states, numberOfActions, precision);
+        if (precision == Precision.FLOAT) return new FloatQTable(states, numberOfActions);
+        if (precision == Precision.DOUBLE) return new DoubleQTable(states, numberOfActions);
+        return new IntQTable(states, numberOfActions);
+    }
+
+    /**
+     * Finds the position of a value in the array
+     *
+     * @param state  The state
+     * @param action The action
+     * @return Returns the index of the value
+     */
+    int index(long state, int action) {
+        return (int) state * numberOfActions + action;
+    }
+
+    /**
+     * Gets a value
+     *
+     * @param state  The state
+     * @param action The action
+     * @return Returns the value of the action in the state
+     */
+    abstract double get(long state, int action);
+
+    /**
+     * Sets a value. Values that do not fit the precision of the table are truncated
+     *
+     * @param state  The state
+     * @param action The action
+     * @param value  The new value
+     */
+    abstract void set(long state, int action, double value);
+
+    /**
+     * Moves a value towards a target with the learning rate alpha, which is the Q-learning update (1 - alpha) * Q + alpha * target
+     *
+     * @param state  The state
+     * @param action The action
+     * @param target The value to move towards
+     * @param alpha  The learning rate
+     * @return Returns how much the value changed
+     */
+    abstract double update(long state, int action, double target, double alpha);
+
+    /**
+     * Sets all values of the table
+     *
+     * @param value The value every state and action should have
+     */
+    abstract void fill(double value);
+
+    /**
+     * Copies the table, e.g. to save it while training continues on the original
+     *
+     * @return Returns a new table with the same values that is not shared
+     */
+    abstract QTable copy();
+
+    /**
+     * Makes sure the values can be written before the table is shared between threads. Only tables that read their values from a file need it, they copy the values here instead of on the first write
+     */
+    void makeWritable() {
+    }
+
+    /**
+     * Finds the memory used by the values of the table, not counting the object headers
+     *
+     * @return Returns the number of bytes
+     */
+    abstract long memoryUsage();
+
+    /**
+     * Formats a value so it can be displayed
+     *
+     * @param state  The state
+     * @param action The action
+     * @return Returns the value as text
+     */
+    String format(long state, int action) {
+        return "" + get(state, action);
+    }
+}
@@ -0,0 +1,74 @@
+package dk.ruc.bachelor;
+
+/**
+ * Keeps the latest transitions of an agent so they can be learned from again. The transitions are stored in preallocated arrays used as a ring, so adding one creates no objects and the oldest transition is overwritten when the buffer is full. Only the old state, the action, the reward and the new state are stored, the target is computed again when a transition is replayed so it uses the newest Q-values
+ */
+class ReplayBuffer {
+
+    //The transitions, one index per transition
+    long[] oldStates;
+    byte[] actions;
+    double[] rewards;
+    long[] states;
+
+    //Number of transitions stored and the index the next one is stored at
+    int size;
+    int next;
+
+    /**
+     * Constructor allocates room for the transitions
+     *
+     * @param capacity The number of transitions kept
+     */
+    ReplayBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("The replay buffer must hold at least one transition");
+        oldStates = new long[capacity];
+        actions = new byte[capacity];
+        rewards = new double[capacity];
+        states = new long[capacity];
+    }
+
+    /**
+     * Stores a transition, overwriting the oldest one if the buffer is full
+     *
+     * @param oldState The state the action was taken in
+     * @param action   The action
+     * @param reward   The reward of the action
+     * @param state    The state the action led to
+     */
+    void add(long oldState, int action, double reward, long state) {
+        oldStates[next] = oldState;
+        actions[next] = (byte) action;
+        rewards[next] = reward;
+        states[next] = state;
+        next = next + 1 == oldStates.length ? 0 : next + 1;
+        if (size < oldStates.length) size++;
+    }
+
+    /**
+     * Picks a stored transition uniformly
+     *
+     * @param random The generator used to pick
+     * @return Returns the index of the transition
+     */
+    int sample(Rng random) {
+        return random.nextInt(size);
+    }
+
+    /**
+     * Removes all transitions, e.g. when the tables they were learned with are replaced
+     */
+    void clear() {
+        size = 0;
+        next = 0;
+    }
+
+    /**
+     * Finds the number of transitions the buffer can hold
+     *
+     * @return Returns the capacity
+     */
+    int capacity() {
+        return oldStates.length;
+    }
+}
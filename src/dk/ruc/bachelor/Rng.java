@@ -0,0 +1,53 @@
+package dk.ruc.bachelor;
+
+/**
+ * A source of random numbers. Generators are not shared between threads, instead each thread gets its own generator split from a master generator, so the threads do not wait for each other and a seeded training can be repeated
+ */
+interface Rng {
+
+    /**
+     * The kinds of generators
+     */
+    enum Kind {SPLITTABLE, XOROSHIRO}
+
+    /**
+     * Creates a seeded generator
+     *
+     * @param kind The kind of generator
+     * @param seed The seed
+     * @return Returns the generator
+     */
+    static Rng create(Kind kind, long seed) {
+        if (kind == Kind.XOROSHIRO) return new XoroshiroRng(seed);
+        return new SplittableRng(seed);
+    }
+
+    /**
+     * Gets a random int
+     *
+     * @param bound The upper bound, which must be positive
+     * @return Returns an int from 0 and up to but not including the bound
+     */
+    int nextInt(int bound);
+
+    /**
+     * Gets a random long
+     *
+     * @return Returns any long value
+     */
+    long nextLong();
+
+    /**
+     * Gets a random double
+     *
+     * @return Returns a double from 0 and up to but not including 1
+     */
+    double nextDouble();
+
+    /**
+     * Creates a new generator that is independent of this one. Splitting a seeded generator in the same order always gives the same generators
+     *
+     * @return Returns the new generator
+     */
+    Rng split();
+}
@@ -0,0 +1,47 @@
+package dk.ruc.bachelor;
+
+/**
+ * Batch kernel that handles one instance at a time. It is used when the Vector API is not available and gives the same results as the vector kernel
+ */
+class ScalarBatchKernel implements BatchKernel {
+
+    @Override
+    public void decide(int[] Q, int[] R, int[] rows, int[] validActions, int[] action, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            int valid = validActions[i];
+            int bestAction = action[i];
+            int bestValue = R[row + bestAction] + Q[row + bestAction];
+            for (int a = 0; a < 4; a++) {
+                int value = R[row + a] + Q[row + a];
+                if (value > bestValue && (valid >> a & 1) != 0) {
+                    bestAction = a;
+                    bestValue = value;
+                }
+            }
+            action[i] = bestAction;
+        }
+    }
+
+    @Override
+    public void maxActions(int[] Q, int[] R, int[] rows, int[] maxAction, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            int maxValue = 0;
+            int bestAction = 0;
+            for (int a = 0; a < 4; a++) {
+                int value = Q[row + a] + R[row + a];
+                if (value >= maxValue) {
+                    maxValue = value;
+                    bestAction = a;
+                }
+            }
+            maxAction[i] = bestAction;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,42 @@
+package dk.ruc.bachelor;
+
+/**
+ * Benchmark that measures how the parallel training scales with the number of threads
+ */
+public class ScalingBenchmark {
+
+    //The thread counts that are measured
+    static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) {
+        int map = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        long episodes = args.length > 1 ? Long.parseLong(args[1]) : 200000;
+
+        //Warm up so the first measurement is not dominated by the JIT compiler
+        for (int threads : THREADS) run(map, episodes / 10, threads);
+
+        System.out.println("Map " + map + ", " + episodes + " episodes");
+        System.out.println("threads\tepisodes/sec\tsteps/sec\tspeedup");
+        double single = 0;
+        for (int threads : THREADS) {
+            ParallelTrainer trainer = run(map, episodes, threads);
+            if (threads == 1) single = trainer.episodesPerSecond();
+            System.out.printf("%d\t%.0f\t%.0f\t%.2f%n", threads, trainer.episodesPerSecond(), trainer.stepsPerSecond(), trainer.episodesPerSecond() / single);
+        }
+    }
+
+    /**
+     * Trains fresh tables with a number of threads
+     *
+     * @param map      The map to train on
+     * @param episodes Number of episodes in total
+     * @param threads  Number of threads
+     * @return Returns the trainer so its statistics can be read
+     */
+    static ParallelTrainer run(int map, long episodes, int threads) {
+        ParallelTrainer trainer = new ParallelTrainer(threads);
+        trainer.setSeed(42);
+        trainer.train(map, episodes);
+        return trainer;
+    }
+}
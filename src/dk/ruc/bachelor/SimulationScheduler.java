@@ -0,0 +1,146 @@
+package dk.ruc.bachelor;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs a simulation on its own thread with a fixed timestep, so the FX thread only draws. Each step is a fixed amount of simulated time, and the thread sleeps until the next step is due. If the thread falls behind, e.g. because a step took long, it catches up with at most maxCatchUp steps in a row and forgets the rest, so it never runs in a burst for a long time. With an unbounded rate the steps run back to back. A snapshot for drawing is published at most once per frame
+ */
+class SimulationScheduler {
+
+    //Target rate for running steps back to back
+    static final double UNBOUNDED = 0;
+
+    //Steps per second, or UNBOUNDED
+    volatile double targetRate = 60;
+
+    //The most steps run in a row to catch up before the rest are dropped
+    int maxCatchUp = 10;
+
+    //Nanoseconds between published snapshots
+    long publishInterval = 1000000000L / 60;
+
+    //Nanoseconds between measurements of the actual rate
+    static final long RATE_INTERVAL = 500000000;
+
+    //The measured steps per second and the number of steps dropped because the thread fell behind
+    volatile double actualRate;
+    volatile long droppedSteps;
+
+    //The latest snapshot, taken by the FX thread when it draws
+    AtomicReference<FrameSnapshot> snapshot = new AtomicReference<>();
+
+    //The thread running the simulation and whether it has been asked to stop
+    Thread thread;
+    volatile boolean stopped;
+
+    /**
+     * Starts running steps on a new thread
+     *
+     * @param step       Runs one step and returns false when the simulation is done
+     * @param snapshots  Takes a snapshot of the simulation, called on the simulation thread
+     * @param onFinished Called on the simulation thread when the simulation is done or stopped
+     */
+    void start(BooleanSupplier step, Supplier<FrameSnapshot> snapshots, Runnable onFinished) {
+        if (isRunning()) throw new IllegalStateException("The simulation is already running");
+        stopped = false;
+        actualRate = 0;
+        droppedSteps = 0;
+        thread = new Thread(() -> {
+            try {
+                run(step, snapshots);
+            } finally {
+                snapshot.set(snapshots.get());
+                onFinished.run();
+            }
+        }, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs steps until the simulation is done or stopped
+     *
+     * @param step      Runs one step and returns false when the simulation is done
+     * @param snapshots Takes a snapshot of the simulation
+     */
+    void run(BooleanSupplier step, Supplier<FrameSnapshot> snapshots) {
+        long now = System.nanoTime();
+        long nextStep = now;
+        long nextPublish = now;
+        long rateStart = now;
+        long rateSteps = 0;
+        while (!stopped) {
+            double rate = targetRate;
+            if (rate == UNBOUNDED) {
+                //Run until the next snapshot is due
+                do {
+                    if (!step.getAsBoolean()) return;
+                    rateSteps++;
+                    now = System.nanoTime();
+                } while (now < nextPublish && !stopped);
+                nextStep = now;
+            } else {
+                long timestep = (long) (1e9 / rate);
+                int steps = 0;
+                while (now >= nextStep && steps < maxCatchUp && !stopped) {
+                    if (!step.getAsBoolean()) return;
+                    nextStep += timestep;
+                    steps++;
+                    now = System.nanoTime();
+                }
+                rateSteps += steps;
+                //Too far behind, drop the steps that were missed
+                if (now >= nextStep) {
+                    droppedSteps += (now - nextStep) / timestep + 1;
+                    nextStep = now + timestep;
+                }
+            }
+
+            if (now >= nextPublish) {
+                snapshot.set(snapshots.get());
+                nextPublish = now + publishInterval;
+            }
+            if (now - rateStart >= RATE_INTERVAL) {
+                actualRate = rateSteps * 1e9 / (now - rateStart);
+                rateStart = now;
+                rateSteps = 0;
+            }
+            if (targetRate != UNBOUNDED) LockSupport.parkNanos(Math.min(nextStep, nextPublish) - System.nanoTime());
+            now = System.nanoTime();
+        }
+    }
+
+    /**
+     * Asks the simulation to stop and waits until the step being run is done
+     */
+    void stop() {
+        stopped = true;
+        if (thread == null || thread == Thread.currentThread()) return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds if the simulation is running
+     *
+     * @return Returns true if the simulation thread is alive
+     */
+    boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Takes the latest snapshot if there is a new one
+     *
+     * @return Returns the snapshot or null if none has been published since the last call
+     */
+    FrameSnapshot takeSnapshot() {
+        return snapshot.getAndSet(null);
+    }
+}
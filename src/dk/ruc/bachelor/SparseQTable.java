@@ -0,0 +1,163 @@
+package dk.ruc.bachelor;
+
+import java.util.Arrays;
+
+/**
+ * Q-table that only stores the states that have been written to. The states are kept in a hash table with open addressing, so a state costs a long key and a float for each action and no objects are created. Reading a state that is not stored gives the value the table was filled with. It is meant for big state spaces, e.g. when the agent sees more than the 3x3 fields around it, and it is not safe to share between threads
+ */
+class SparseQTable extends QTable {
+
+    //The stored states plus one, 0 marks an empty slot
+    long[] keys;
+
+    //The values of the stored states, numberOfActions values per slot
+    float[] values;
+
+    //Number of stored states
+    int size;
+
+    //The value of states that are not stored
+    float defaultValue;
+
+    //The number of slots to start with
+    static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Constructor allocates room for the initial number of states
+     *
+     * @param numberOfStates  Number of states
+     * @param numberOfActions Number of actions in each state
+     * @param precision       The type of the values, int values are truncated like in the other tables
+     */
+    SparseQTable(long numberOfStates, int numberOfActions, Precision precision) {
+        super(numberOfStates, numberOfActions, precision, Storage.SPARSE);
+        if (precision == Precision.DOUBLE) throw new IllegalArgumentException("Sparse tables store the values as floats");
+        keys = new long[INITIAL_CAPACITY];
+        values = new float[INITIAL_CAPACITY * numberOfActions];
+    }
+
+    /**
+     * Finds the first slot to look for a state in
+     *
+     * @param state The state
+     * @return Returns the slot
+     */
+    int hash(long state) {
+        return (int) ((state * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    /**
+     * Finds the slot of a state
+     *
+     * @param state The state
+     * @return Returns the slot or -1 if the state is not stored
+     */
+    int find(long state) {
+        int slot = hash(state);
+        while (keys[slot] != 0) {
+            if (keys[slot] == state + 1) return slot;
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the slot of a state and stores the state if it is not stored already
+     *
+     * @param state The state
+     * @return Returns the slot
+     */
+    int materialize(long state) {
+        int slot = hash(state);
+        while (keys[slot] != 0) {
+            if (keys[slot] == state + 1) return slot;
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        //Keep the table at most half full so the searches stay short
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            return materialize(state);
+        }
+        keys[slot] = state + 1;
+        Arrays.fill(values, slot * numberOfActions, (slot + 1) * numberOfActions, defaultValue);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Doubles the number of slots and moves the stored states to their new slots
+     */
+    void grow() {
+        long[] oldKeys = keys;
+        float[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new float[keys.length * numberOfActions];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = hash(oldKeys[i] - 1);
+            while (keys[slot] != 0) slot = (slot + 1) & (keys.length - 1);
+            keys[slot] = oldKeys[i];
+            System.arraycopy(oldValues, i * numberOfActions, values, slot * numberOfActions, numberOfActions);
+        }
+    }
+
+    @Override
+    double get(long state, int action) {
+        int slot = find(state);
+        if (slot < 0) return defaultValue;
+        return values[slot * numberOfActions + action];
+    }
+
+    @Override
+    void set(long state, int action, double value) {
+        if (precision == Precision.INT) value = (int) value;
+        values[materialize(state) * numberOfActions + action] = (float) value;
+    }
+
+    @Override
+    double update(long state, int action, double target, double alpha) {
+        int index = materialize(state) * numberOfActions + action;
+        double oldValue = values[index];
+        double value = (1 - alpha) * oldValue + alpha * target;
+        if (precision == Precision.INT) value = (int) value;
+        values[index] = (float) value;
+        return values[index] - oldValue;
+    }
+
+    @Override
+    QTable copy() {
+        SparseQTable copy = new SparseQTable(numberOfStates, numberOfActions, precision);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        copy.defaultValue = defaultValue;
+        return copy;
+    }
+
+    @Override
+    long memoryUsage() {
+        return (long) keys.length * Long.BYTES + (long) values.length * Float.BYTES;
+    }
+
+    @Override
+    void fill(double value) {
+        Arrays.fill(keys, 0);
+        size = 0;
+        defaultValue = precision == Precision.INT ? (int) value : (float) value;
+    }
+
+    @Override
+    String format(long state, int action) {
+        if (precision == Precision.INT) return "" + (int) get(state, action);
+        return "" + get(state, action);
+    }
+
+    /**
+     * Finds how much of the state space is stored
+     *
+     * @return Returns the stored states divided by the number of states
+     */
+    double occupancy() {
+        return (double) size / numberOfStates;
+    }
+}
@@ -0,0 +1,57 @@
+package dk.ruc.bachelor;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generator using the SplittableRandom of Java, which is fast and has no synchronization
+ */
+class SplittableRng implements Rng {
+
+    //The generator used
+    SplittableRandom random;
+
+    /**
+     * Constructor for a generator with a random seed
+     */
+    SplittableRng() {
+        random = new SplittableRandom();
+    }
+
+    /**
+     * Constructor for a seeded generator
+     *
+     * @param seed The seed
+     */
+    SplittableRng(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Constructor for a generator that has been split from another
+     *
+     * @param randomInput The generator to use
+     */
+    SplittableRng(SplittableRandom randomInput) {
+        random = randomInput;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public Rng split() {
+        return new SplittableRng(random.split());
+    }
+}
@@ -0,0 +1,174 @@
+package dk.ruc.bachelor;
+
+/**
+ * Holds the state id and the valid actions of every field of a map, so they are found by the position of the agent instead of looking at the fields around it every step. They are computed once when the map is set and only recomputed around fields that change. Maps with more fields than the precompute limit would need too much memory for this, so on those maps they are computed from the map on every lookup instead
+ */
+class StateIndex {
+
+    //The map the ids belong to
+    Grid map;
+
+    //Size of the map
+    int columns, rows;
+
+    //How many fields the agent sees in each direction
+    int visionRange;
+
+    //True if the ids and action masks are stored for every field
+    boolean precomputed;
+
+    //The state id of each field, stored column by column
+    long[] ids;
+
+    //Bit masks of the actions that do not walk into a wall and the actions that reach the goal from each field
+    byte[] validActions, goalActions;
+
+    //The biggest number of fields that are precomputed, which uses 10 bytes per field
+    static final int PRECOMPUTE_LIMIT = 1 << 22;
+
+    /**
+     * Constructor computes the state ids of all fields of the map
+     *
+     * @param mapInput         The map
+     * @param visionRangeInput How many fields the agent sees in each direction
+     */
+    StateIndex(Grid mapInput, int visionRangeInput) {
+        visionRange = visionRangeInput;
+        setMap(mapInput);
+    }
+
+    /**
+     * Sets a new map and computes the state ids of all its fields
+     *
+     * @param mapInput The map
+     */
+    void setMap(Grid mapInput) {
+        map = mapInput;
+        columns = map.columns;
+        rows = map.rows;
+        precomputed = columns * rows <= PRECOMPUTE_LIMIT;
+        if (!precomputed) {
+            ids = null;
+            validActions = null;
+            goalActions = null;
+            return;
+        }
+        if (ids == null || ids.length != columns * rows) {
+            ids = new long[columns * rows];
+            validActions = new byte[columns * rows];
+            goalActions = new byte[columns * rows];
+        }
+        for (int x = 0; x < columns; x++) {
+            for (int y = 0; y < rows; y++) computeField(x, y);
+        }
+    }
+
+    /**
+     * Gets the state id of a field
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     * @return Returns the state id of an agent standing on the field
+     */
+    long get(int x, int y) {
+        if (!precomputed) return computeStateId(x, y);
+        return ids[x * rows + y];
+    }
+
+    /**
+     * Gets the actions that do not walk into a wall from a field
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     * @return Returns a bit mask with a bit set for each valid action
+     */
+    int validActions(int x, int y) {
+        if (!precomputed) return computeActions(x, y, 1) ^ 15;
+        return validActions[x * rows + y];
+    }
+
+    /**
+     * Gets the actions that reach the goal from a field
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     * @return Returns a bit mask with a bit set for each action that reaches the goal
+     */
+    int goalActions(int x, int y) {
+        if (!precomputed) return computeActions(x, y, 2);
+        return goalActions[x * rows + y];
+    }
+
+    /**
+     * Recomputes the state ids and action masks of the fields that can see a field, after the field has changed
+     *
+     * @param x X coordinate of the changed field
+     * @param y Y coordinate of the changed field
+     */
+    void update(int x, int y) {
+        if (!precomputed) return;
+        for (int i = Math.max(0, x - visionRange); i <= Math.min(columns - 1, x + visionRange); i++) {
+            for (int j = Math.max(0, y - visionRange); j <= Math.min(rows - 1, y + visionRange); j++) {
+                computeField(i, j);
+            }
+        }
+    }
+
+    /**
+     * Computes the state id and the action masks of a field
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     */
+    void computeField(int x, int y) {
+        int index = x * rows + y;
+        ids[index] = computeStateId(x, y);
+        validActions[index] = (byte) (computeActions(x, y, 1) ^ 15);
+        goalActions[index] = (byte) computeActions(x, y, 2);
+    }
+
+    /**
+     * Finds the actions that lead to a certain kind of field
+     *
+     * @param x     X coordinate of the field
+     * @param y     Y coordinate of the field
+     * @param field The kind of field to look for
+     * @return Returns a bit mask with a bit set for each action that leads to that kind of field
+     */
+    int computeActions(int x, int y, int field) {
+        int actions = 0;
+        for (int action = 0; action < Logic.DX.length; action++) {
+            if (seenField(x + Logic.DX[action], y + Logic.DY[action]) == field) actions |= 1 << action;
+        }
+        return actions;
+    }
+
+    /**
+     * Computes the state id of a field by looking at the fields around it. Each field seen is a digit in base 3 and the first field seen is the most significant digit
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     * @return Returns the state id
+     */
+    long computeStateId(int x, int y) {
+        long stateId = 0;
+        for (int i = -visionRange; i <= visionRange; i++) {
+            for (int j = -visionRange; j <= visionRange; j++) {
+                if (i != 0 || j != 0) stateId = stateId * 3 + seenField(x + i, y + j);
+            }
+        }
+        return stateId;
+    }
+
+    /**
+     * Finds what the agent sees in a field. Fields outside the map are seen as walls
+     *
+     * @param x X coordinate of the field
+     * @param y Y coordinate of the field
+     * @return Returns 0 for empty fields, 1 for walls and 2 for the goal
+     */
+    int seenField(int x, int y) {
+        if (!map.contains(x, y)) return 1;
+        return map.get(x, y);
+    }
+}
@@ -0,0 +1,57 @@
+package dk.ruc.bachelor;
+
+/**
+ * Benchmark that measures how many training steps per second the logic does on each map. Each map is warmed up first so the JIT compiler has compiled the step, and then measured in several iterations so the spread can be seen
+ */
+public class StepBenchmark {
+
+    //Names of the maps in the same order as their numbers
+    static final String[] MAP_NAMES = {"Zero", "Random1", "Random2", "Random3", "Custom1", "Custom2", "Custom3", "Custom4", "Random levels"};
+
+    //Number of iterations and the length of each iteration
+    static final int WARMUP_ITERATIONS = 5;
+    static final int MEASUREMENT_ITERATIONS = 10;
+    static final long ITERATION_TIME = 200000000; //Nanoseconds
+
+    //Steps done between checking the time
+    static final int BATCH = 1024;
+
+    public static void main(String[] args) {
+        System.out.println("map\tsteps/sec\terror");
+        for (int map = 0; map < MAP_NAMES.length; map++) {
+            Logic logic = new Logic();
+            logic.setSeed(42);
+            logic.setMap(map);
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) measure(logic);
+
+            double[] results = new double[MEASUREMENT_ITERATIONS];
+            double mean = 0;
+            for (int i = 0; i < results.length; i++) {
+                results[i] = measure(logic);
+                mean += results[i] / results.length;
+            }
+            double variance = 0;
+            for (double result : results) variance += (result - mean) * (result - mean) / (results.length - 1);
+            System.out.printf("%s\t%.0f\t%.0f%n", MAP_NAMES[map], mean, Math.sqrt(variance));
+        }
+    }
+
+    /**
+     * Trains for one iteration
+     *
+     * @param logic The logic to train
+     * @return Returns the steps per second of the iteration
+     */
+    static double measure(Logic logic) {
+        long steps = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            for (int i = 0; i < BATCH; i++) logic.doAction(true);
+            steps += BATCH;
+            now = System.nanoTime();
+        } while (now - start < ITERATION_TIME);
+        return steps * 1e9 / (now - start);
+    }
+}
@@ -0,0 +1,258 @@
+package dk.ruc.bachelor;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Trains every combination of a list of configurations and a list of maps and measures how well each one learns. The runs are independent, so they are trained in parallel on a fork-join pool, each run with its own logic and its own generator split from a master generator in a fixed order, so a sweep with a seed always gives the same table
+ */
+class Sweep {
+
+    /**
+     * The values one run is trained with
+     */
+    static class Configuration {
+
+        //The learning values
+        double alpha, gamma;
+        int QZero, rewardValue;
+
+        //Number of episodes to train
+        int episodes;
+
+        /**
+         * Constructor sets all values
+         *
+         * @param alphaInput       Learning rate
+         * @param gammaInput       Discount factor
+         * @param QZeroInput       The value the Q-table starts with
+         * @param rewardValueInput The reward for reaching the goal
+         * @param episodesInput    Number of episodes to train
+         */
+        Configuration(double alphaInput, double gammaInput, int QZeroInput, int rewardValueInput, int episodesInput) {
+            alpha = alphaInput;
+            gamma = gammaInput;
+            QZero = QZeroInput;
+            rewardValue = rewardValueInput;
+            episodes = episodesInput;
+        }
+    }
+
+    /**
+     * What one configuration achieved on one map
+     */
+    static class Result {
+
+        //What was trained
+        Configuration configuration;
+        int map;
+
+        //Mean steps of the episodes in the last tenth that reached the goal, or NaN if all of them were stopped
+        double meanSteps;
+
+        //The fewest steps to the goal on the map and how much longer the mean steps are relative to it. Random levels change during the run, so they give the mean shortest path of the levels of the finished episodes in the last tenth
+        int shortestPath;
+        double optimalityGap;
+
+        //Number of episodes before every following episode reached the goal in at most the convergence factor times the mean steps
+        int convergenceEpisode;
+
+        //Time the training took in nanoseconds
+        long wallTime;
+
+        //Number of episodes stopped by the watchdog
+        long stoppedEpisodes;
+    }
+
+    //An episode counts as converged if it takes at most this many times the final mean steps
+    static final double CONVERGENCE_FACTOR = 1.5;
+
+    //The configurations and maps to train
+    List<Configuration> configurations = new ArrayList<>();
+    int[] maps = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    //The generator the runs get their generators from
+    Rng master = new SplittableRng(42);
+
+    //Number of threads, 0 uses the common pool
+    int threads;
+
+    //Stops runaway episodes of all runs if it is set, so one bad configuration can not hold up the sweep
+    EpisodeWatchdog watchdog;
+
+    /**
+     * Adds every combination of the values
+     *
+     * @param alphas       Learning rates
+     * @param gammas       Discount factors
+     * @param QZeros       Values the Q-table starts with
+     * @param rewardValues Rewards for reaching the goal
+     * @param episodes     Numbers of episodes to train
+     */
+    void addGrid(double[] alphas, double[] gammas, int[] QZeros, int[] rewardValues, int[] episodes) {
+        for (double alpha : alphas) {
+            for (double gamma : gammas) {
+                for (int QZero : QZeros) {
+                    for (int rewardValue : rewardValues) {
+                        for (int episodeCount : episodes) configurations.add(new Configuration(alpha, gamma, QZero, rewardValue, episodeCount));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds configurations with random values. Alpha and gamma are drawn between the lowest and highest given value, the others are picked among the given values
+     *
+     * @param count        Number of configurations to add
+     * @param alphas       Learning rates
+     * @param gammas       Discount factors
+     * @param QZeros       Values the Q-table starts with
+     * @param rewardValues Rewards for reaching the goal
+     * @param episodes     Numbers of episodes to train
+     */
+    void addRandom(int count, double[] alphas, double[] gammas, int[] QZeros, int[] rewardValues, int[] episodes) {
+        Rng random = master.split();
+        for (int i = 0; i < count; i++) {
+            double alpha = between(random, alphas);
+            double gamma = between(random, gammas);
+            int QZero = QZeros[random.nextInt(QZeros.length)];
+            int rewardValue = rewardValues[random.nextInt(rewardValues.length)];
+            int episodeCount = episodes[random.nextInt(episodes.length)];
+            configurations.add(new Configuration(alpha, gamma, QZero, rewardValue, episodeCount));
+        }
+    }
+
+    /**
+     * Draws a value between the lowest and highest of some values
+     *
+     * @param random The generator
+     * @param values The values
+     * @return Returns the value
+     */
+    static double between(Rng random, double[] values) {
+        double min = values[0];
+        double max = values[0];
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return min + random.nextDouble() * (max - min);
+    }
+
+    /**
+     * Trains every configuration on every map
+     *
+     * @return Returns the results in the order of the configurations and then the maps
+     */
+    List<Result> run() {
+        //The shortest path of each library map is found once before the runs start, so the runs never wait for each other to find it
+        PathOracle oracle = new PathOracle(maps.length);
+        Logic mapLogic = new Logic();
+        int[] shortestPaths = new int[maps.length];
+        for (int i = 0; i < maps.length; i++) {
+            if (maps[i] == 8) continue;
+            mapLogic.setMap(maps[i]);
+            shortestPaths[i] = oracle.shortestPath(mapLogic.map);
+        }
+
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+        try {
+            for (Configuration configuration : configurations) {
+                for (int i = 0; i < maps.length; i++) {
+                    int map = maps[i];
+                    int shortestPath = shortestPaths[i];
+                    Rng random = master.split();
+                    tasks.add(pool.submit(() -> train(configuration, map, shortestPath, random, watchdog)));
+                }
+            }
+            List<Result> results = new ArrayList<>();
+            for (ForkJoinTask<Result> task : tasks) results.add(task.join());
+            return results;
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) pool.shutdown();
+        }
+    }
+
+    /**
+     * Trains one configuration on one map with a fresh logic. Random levels are generated again every round of episodes per training, like the rounds of the training engine, so the agent learns to solve random levels and not one level
+     *
+     * @param configuration The values to train with
+     * @param map           The map
+     * @param shortestPath  The fewest steps to the goal on the map, not used for random levels since they change during the run
+     * @param random        The generator of the run
+     * @param watchdog      Stops runaway episodes, or null
+     * @return Returns the result
+     */
+    static Result train(Configuration configuration, int map, int shortestPath, Rng random, EpisodeWatchdog watchdog) {
+        Logic logic = new Logic();
+        logic.setRandom(random);
+        logic.watchdog = watchdog;
+        logic.alpha = configuration.alpha;
+        logic.gamma = configuration.gamma;
+        logic.QZero = configuration.QZero;
+        logic.rewardValue = configuration.rewardValue;
+        logic.initializeTables();
+        logic.setMap(map);
+
+        long start = System.nanoTime();
+        int[] steps = new int[configuration.episodes];
+        int last = Math.max(1, steps.length / 10);
+        int[] shortestPaths = new int[steps.length];
+        PathOracle oracle = new PathOracle(1);
+        //Episodes stopped by the watchdog did not reach the goal, so they are stored as -1 and left out of the statistics. Only the random levels of the last tenth need their shortest path
+        for (int i = 0; i < steps.length; i++) {
+            if (map == 8 && i > 0 && i % logic.episodesPerTraining == 0) logic.setMap(map);
+            if (map == 8 && i >= steps.length - last) shortestPaths[i] = oracle.shortestPath(logic.map);
+            else shortestPaths[i] = shortestPath;
+            steps[i] = logic.runEpisode();
+            if (logic.episodeStopped) steps[i] = -1;
+        }
+
+        Result result = new Result();
+        result.configuration = configuration;
+        result.map = map;
+        result.wallTime = System.nanoTime() - start;
+        result.stoppedEpisodes = logic.runawayEpisodes;
+
+        //Mean of the finished episodes in the last tenth of the episodes
+        long lastSteps = 0;
+        long lastShortestPaths = 0;
+        int finished = 0;
+        for (int i = steps.length - last; i < steps.length; i++) {
+            if (steps[i] < 0) continue;
+            lastSteps += steps[i];
+            lastShortestPaths += shortestPaths[i];
+            finished++;
+        }
+        result.meanSteps = finished == 0 ? Double.NaN : (double) lastSteps / finished;
+
+        //Go back from the end until an episode is too long or was stopped
+        int episode = steps.length;
+        while (episode > 0 && steps[episode - 1] >= 0 && steps[episode - 1] <= CONVERGENCE_FACTOR * result.meanSteps) episode--;
+        result.convergenceEpisode = episode;
+
+        result.shortestPath = map != 8 ? shortestPath : finished == 0 ? 0 : (int) Math.round((double) lastShortestPaths / finished);
+        result.optimalityGap = lastShortestPaths > 0 ? (double) lastSteps / lastShortestPaths - 1 : Double.NaN;
+        return result;
+    }
+
+    /**
+     * Writes the results as a table with tab separated columns
+     *
+     * @param results The results
+     * @param out     Where to write the table
+     */
+    static void write(List<Result> results, PrintStream out) {
+        out.println("alpha\tgamma\tQZero\trewardValue\tepisodes\tmap\tmeanSteps\tshortestPath\toptimalityGap\tconvergenceEpisode\twallTimeMs\tstoppedEpisodes");
+        for (Result result : results) {
+            Configuration configuration = result.configuration;
+            out.printf(Locale.ROOT, "%.4f\t%.4f\t%d\t%d\t%d\t%d\t%.1f\t%d\t%.3f\t%d\t%d\t%d%n", configuration.alpha, configuration.gamma, configuration.QZero, configuration.rewardValue, configuration.episodes, result.map, result.meanSteps, result.shortestPath, result.optimalityGap, result.convergenceEpisode, result.wallTime / 1000000, result.stoppedEpisodes);
+        }
+    }
+}
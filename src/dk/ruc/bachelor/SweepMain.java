@@ -0,0 +1,104 @@
+package dk.ruc.bachelor;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Entry point for a hyperparameter sweep from the command line. Each option takes a comma separated list of values, and every combination is trained on every map unless a number of random configurations is given
+ */
+public class SweepMain {
+
+    public static void main(String[] args) {
+        Sweep sweep = new Sweep();
+        double[] alphas = {0.8};
+        double[] gammas = {0.8};
+        int[] QZeros = {0};
+        int[] rewardValues = {10000000};
+        int[] episodes = {1000};
+        int randomCount = 0;
+        String out = null;
+
+        //Read the options, each option is followed by its value
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) usage("Missing value for " + args[i]);
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--alpha":
+                        alphas = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                        break;
+                    case "--gamma":
+                        gammas = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                        break;
+                    case "--qzero":
+                        QZeros = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "--reward":
+                        rewardValues = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "--episodes":
+                        episodes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "--maps":
+                        sweep.maps = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                        break;
+                    case "--random":
+                        randomCount = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        sweep.master = new SplittableRng(Long.parseLong(value));
+                        break;
+                    case "--threads":
+                        sweep.threads = Integer.parseInt(value);
+                        break;
+                    case "--max-steps":
+                        sweep.watchdog = new EpisodeWatchdog(Integer.parseInt(value), sweep.watchdog == null ? 0 : sweep.watchdog.maxVisits);
+                        break;
+                    case "--max-visits":
+                        sweep.watchdog = new EpisodeWatchdog(sweep.watchdog == null ? 0 : sweep.watchdog.maxSteps, Integer.parseInt(value));
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    default:
+                        usage("Unknown option " + args[i]);
+                }
+            } catch (IllegalArgumentException e) {
+                usage("Invalid value for " + args[i] + ": " + value);
+            }
+        }
+        for (int map : sweep.maps) {
+            if (map < 0 || map > 8) usage("The maps must be between 0 and 8");
+        }
+        for (int episodeCount : episodes) {
+            if (episodeCount < 1) usage("The number of episodes must be at least 1");
+        }
+        if (sweep.threads < 0) usage("The number of threads can not be negative");
+
+        if (randomCount > 0) sweep.addRandom(randomCount, alphas, gammas, QZeros, rewardValues, episodes);
+        else sweep.addGrid(alphas, gammas, QZeros, rewardValues, episodes);
+
+        long start = System.nanoTime();
+        PrintStream stream = System.out;
+        try {
+            if (out != null) stream = new PrintStream(out);
+        } catch (FileNotFoundException e) {
+            usage("Could not write " + out + ": " + e.getMessage());
+        }
+        Sweep.write(sweep.run(), stream);
+        if (stream != System.out) stream.close();
+        System.err.println("Trained " + sweep.configurations.size() + " configuration(s) on " + sweep.maps.length + " map(s) in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Prints how to use the program and exits
+     *
+     * @param error What was wrong with the arguments
+     */
+    static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: SweepMain [--alpha a,b,...] [--gamma g,...] [--qzero q,...] [--reward r,...] [--episodes n,...] [--maps 0,1,...] [--random n] [--seed s] [--threads n] [--max-steps n] [--max-visits n] [--out file]");
+        System.exit(1);
+    }
+}
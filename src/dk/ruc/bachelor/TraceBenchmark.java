@@ -0,0 +1,56 @@
+package dk.ruc.bachelor;
+
+/**
+ * Benchmark that compares plain Q-learning with Q(lambda) on the custom maps, which have the longest paths to the goal. For each lambda a number of seeded agents are trained until the convergence monitor stops them, and the wall-clock time it took is printed together with the episodes, the steps of the last episode and the longest trace path held. Plain Q-learning is shown as lambda -
+ */
+public class TraceBenchmark {
+
+    //The lambdas compared, a negative lambda is plain Q-learning
+    static final double[] LAMBDAS = {-1, 0.5, 0.8, 0.9, 0.95};
+
+    //The custom maps
+    static final int[] MAPS = {4, 5, 6, 7};
+
+    //Number of seeds trained for each lambda and map
+    static final int SEEDS = 5;
+
+    //Episodes before a training is given up and counted as not converged
+    static final int MAX_EPISODES = 5000;
+
+    //Episodes in a row without policy changes before the training counts as converged
+    static final int CONVERGENCE_WINDOW = 50;
+
+    //Steps before an episode is stopped. A stopped episode starts the convergence window over, so a policy that only stopped changing because every episode is stopped does not converge
+    static final int MAX_EPISODE_STEPS = 20000;
+
+    public static void main(String[] args) {
+        System.out.println("lambda\tmap\tconverged\tepisodes\tsteps\ttraceLength\ttimeMs");
+        for (double lambda : LAMBDAS) {
+            for (int map : MAPS) {
+                int converged = 0;
+                long convergedEpisodes = 0;
+                long convergedTime = 0;
+                long lastSteps = 0;
+                int traceLength = 0;
+                for (int seed = 0; seed < SEEDS; seed++) {
+                    TrainingEngine engine = new TrainingEngine(new Logic());
+                    engine.setSeed(seed);
+                    engine.setLambda(lambda);
+                    engine.setConvergenceMonitor(new ConvergenceMonitor(CONVERGENCE_WINDOW));
+                    engine.setWatchdog(new EpisodeWatchdog(MAX_EPISODE_STEPS, 0));
+                    engine.train(map, MAX_EPISODES);
+                    if (engine.monitor.converged()) {
+                        converged++;
+                        convergedEpisodes += engine.monitor.convergedEpisode;
+                        convergedTime += engine.trainingTime;
+                    }
+                    lastSteps += engine.lastEpisodeSteps;
+                    if (engine.logic.traces != null) traceLength = Math.max(traceLength, engine.logic.traces.maxSize);
+                }
+                String episodes = converged == 0 ? "-" : "" + convergedEpisodes / converged;
+                String time = converged == 0 ? "-" : "" + convergedTime / converged / 1000000;
+                System.out.printf("%s\t%s\t%d/%d\t%s\t%d\t%d\t%s%n", lambda < 0 ? "-" : "" + lambda, StepBenchmark.MAP_NAMES[map], converged, SEEDS, episodes, lastSteps / SEEDS, traceLength, time);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package dk.ruc.bachelor;
+
+/**
+ * The training engine runs the training of an agent. It has no dependency on JavaFX so it can be used headless as well as by the controller
+ */
+class TrainingEngine {
+
+    //The logic that is trained
+    Logic logic;
+
+    //Number of episodes and steps trained in total
+    long episodes, steps;
+
+    //Steps of the last episode that reached the goal, and if the last episode was stopped by the watchdog instead
+    int lastEpisodeSteps;
+    boolean lastEpisodeStopped;
+
+    //Time spent training in nanoseconds
+    long trainingTime;
+
+    //Writes a checkpoint every checkpointEvery episodes if it is set
+    CheckpointWriter checkpointWriter;
+    long checkpointEvery;
+
+    //Stops the training when it has converged if it is set
+    ConvergenceMonitor monitor;
+
+    //Called on the training thread after every episode if it is set
+    Runnable episodeListener;
+
+    /**
+     * Constructor sets the logic that should be trained
+     *
+     * @param logicInput The logic to train
+     */
+    TrainingEngine(Logic logicInput) {
+        logic = logicInput;
+    }
+
+    /**
+     * Seeds the logic so a training can be repeated
+     *
+     * @param seed The seed to use
+     */
+    void setSeed(long seed) {
+        setRandom(new SplittableRng(seed));
+    }
+
+    /**
+     * Sets the random object used for training
+     *
+     * @param master The random object to use
+     */
+    void setRandom(Rng master) {
+        logic.setRandom(master);
+    }
+
+    /**
+     * Sets the monitor that stops the training when it has converged
+     *
+     * @param monitorInput The monitor, or null to always train all episodes
+     */
+    void setConvergenceMonitor(ConvergenceMonitor monitorInput) {
+        monitor = monitorInput;
+        logic.trackPolicy = monitor != null;
+    }
+
+    /**
+     * Turns planning with a learned model on or off
+     *
+     * @param mode   How the planning updates are picked, or null to turn planning off
+     * @param budget Number of planning updates after each real step
+     */
+    void setPlanning(Planner.Mode mode, int budget) {
+        logic.planner = mode != null ? new Planner(mode, budget, logic.numberOfActions) : null;
+    }
+
+    /**
+     * Turns eligibility traces on or off
+     *
+     * @param lambda How slowly the traces fade between 0 and 1, or a negative value to turn them off
+     */
+    void setLambda(double lambda) {
+        logic.traces = lambda >= 0 ? new EligibilityTraces(lambda) : null;
+    }
+
+    /**
+     * Sets how the agent explores while it trains
+     *
+     * @param exploration The exploration strategy
+     */
+    void setExploration(ExplorationStrategy exploration) {
+        logic.exploration = exploration;
+    }
+
+    /**
+     * Sets the watchdog that stops runaway episodes
+     *
+     * @param watchdog The watchdog, or null to let every episode run until the goal is reached
+     */
+    void setWatchdog(EpisodeWatchdog watchdog) {
+        logic.watchdog = watchdog;
+    }
+
+    /**
+     * Starts recording metrics of the training
+     *
+     * @param metrics The metrics to record into
+     */
+    void setMetrics(Metrics metrics) {
+        logic.recorder = metrics.recorder();
+    }
+
+    /**
+     * Sets up experience replay for the logic
+     *
+     * @param capacity The number of transitions kept, or 0 to turn replay off
+     * @param batch    The number of transitions replayed after every step
+     */
+    void setReplay(int capacity, int batch) {
+        logic.setReplay(capacity, batch);
+    }
+
+    /**
+     * Sets the alpha and gamma values of the logic
+     *
+     * @param alpha The learning rate
+     * @param gamma The discount factor
+     */
+    void setParameters(double alpha, double gamma) {
+        logic.alpha = alpha;
+        logic.gamma = gamma;
+    }
+
+    /**
+     * Sets the size and number of walls of random maps
+     *
+     * @param columns Number of columns
+     * @param rows    Number of rows
+     * @param walls   Number of walls
+     */
+    void setRandomMapSize(int columns, int rows, int walls) {
+        logic.setRandomMapSize(columns, rows, walls);
+    }
+
+    /**
+     * Sets how random maps are made solvable
+     *
+     * @param solvableByConstruction If true the maps are built around a path from start to goal, otherwise maps are generated until one is solvable
+     */
+    void setSolvableByConstruction(boolean solvableByConstruction) {
+        logic.setSolvableByConstruction(solvableByConstruction);
+    }
+
+    /**
+     * Sets the type of the values, how the tables are stored and how far the agent sees. This creates new tables
+     *
+     * @param precision   The type of the values
+     * @param storage     How the values are stored
+     * @param visionRange How many fields the agent sees in each direction
+     */
+    void configureTables(QTable.Precision precision, QTable.Storage storage, int visionRange) {
+        logic.precision = precision;
+        logic.storage = storage;
+        logic.setVisionRange(visionRange);
+    }
+
+    /**
+     * Gives the logic the tables and values of a checkpoint
+     *
+     * @param checkpoint The checkpoint to restore
+     */
+    void restore(Checkpoint checkpoint) {
+        checkpoint.restore(logic);
+    }
+
+    /**
+     * Stops the training as soon as possible, also in the middle of an episode. It is safe to call from another thread
+     */
+    void cancel() {
+        logic.cancelled = true;
+    }
+
+    /**
+     * Finds if the training has been cancelled
+     *
+     * @return Returns true if cancel has been called since the last resume
+     */
+    boolean isCancelled() {
+        return logic.cancelled;
+    }
+
+    /**
+     * Lets the training run again after it has been cancelled
+     */
+    void resume() {
+        logic.cancelled = false;
+    }
+
+    /**
+     * Runs one training round on the map, which is the number of episodes per training set in the logic
+     *
+     * @param map What the map should be
+     */
+    void trainRound(int map) {
+        train(map, logic.episodesPerTraining);
+    }
+
+    /**
+     * Sets the map and trains the agent for a number of episodes. An episode that is cancelled is not counted
+     *
+     * @param map          What the map should be
+     * @param episodeCount Number of episodes to train
+     */
+    void train(int map, long episodeCount) {
+        long start = System.nanoTime();
+        logic.setMap(map);
+        for (long i = 0; i < episodeCount && !logic.cancelled; i++) {
+            int episodeSteps = logic.runEpisode();
+            if (episodeSteps < 0) break;
+            lastEpisodeStopped = logic.episodeStopped;
+            if (!lastEpisodeStopped) lastEpisodeSteps = episodeSteps;
+            steps += episodeSteps;
+            episodes++;
+            if (checkpointWriter != null && episodes % checkpointEvery == 0) checkpointWriter.checkpoint(logic);
+            if (episodeListener != null) episodeListener.run();
+            if (monitor != null && (lastEpisodeStopped ? monitor.recordStopped() : monitor.record(logic.policyChanges, logic.maxDelta, episodeSteps))) break;
+        }
+        trainingTime += System.nanoTime() - start;
+    }
+
+    /**
+     * Finds the number of episodes trained per second
+     *
+     * @return Returns episodes per second or 0 if nothing is trained
+     */
+    double episodesPerSecond() {
+        if (trainingTime == 0) return 0;
+        return episodes * 1e9 / trainingTime;
+    }
+
+    /**
+     * Finds the number of steps trained per second
+     *
+     * @return Returns steps per second or 0 if nothing is trained
+     */
+    double stepsPerSecond() {
+        if (trainingTime == 0) return 0;
+        return steps * 1e9 / trainingTime;
+    }
+}
@@ -0,0 +1,169 @@
+package dk.ruc.bachelor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Trains a number of rounds on a background thread and streams the progress to a listener, e.g. the controller. The progress is coalesced: a new event is only made when the listener has taken the last one, so a fast training never floods the listener and the listener always gets the latest progress. The last event, when the training is done or cancelled, is always delivered. Cancelling stops the training within a few steps, also in the middle of a long episode
+ */
+class TrainingTask {
+
+    /**
+     * The progress of the training at one moment
+     */
+    static class Progress {
+
+        //Rounds done of the rounds to train
+        int rounds, totalRounds;
+
+        //Episodes and steps trained in total by the engine
+        long episodes, steps;
+
+        //Steps of the last episode that reached the goal, if the last episode was stopped by the watchdog and the biggest Q-value change of the last episode
+        int lastEpisodeSteps;
+        boolean lastEpisodeStopped;
+        double maxDelta;
+
+        //What the agent looked like after the last episode
+        FrameSnapshot frame;
+
+        //If the training is over and why
+        boolean done, cancelled, converged;
+
+        //What made the training fail, or null
+        Throwable error;
+    }
+
+    //All training runs on one thread, which does not keep the program alive
+    static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "training");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //The engine that is trained and the map and rounds it is trained on
+    TrainingEngine engine;
+    int map;
+    int totalRounds;
+
+    //Gets the progress events and runs them where the listener wants them, e.g. on the FX thread
+    Consumer<Progress> listener;
+    Consumer<Runnable> dispatcher;
+
+    //Rounds done, counted on the training thread
+    volatile int rounds;
+
+    //True while an event is on its way to the listener
+    AtomicBoolean pending = new AtomicBoolean();
+
+    //The training running on the executor
+    Future<?> future;
+
+    //What made the training fail, or null
+    volatile Throwable error;
+
+    /**
+     * Constructor sets what to train and where to send the progress
+     *
+     * @param engineInput      The engine to train
+     * @param mapInput         What the map should be
+     * @param totalRoundsInput Number of training rounds
+     * @param listenerInput    Gets the progress events
+     * @param dispatcherInput  Runs the delivery of each event, e.g. Platform::runLater, or Runnable::run to deliver on the training thread
+     */
+    TrainingTask(TrainingEngine engineInput, int mapInput, int totalRoundsInput, Consumer<Progress> listenerInput, Consumer<Runnable> dispatcherInput) {
+        engine = engineInput;
+        map = mapInput;
+        totalRounds = totalRoundsInput;
+        listener = listenerInput;
+        dispatcher = dispatcherInput;
+    }
+
+    /**
+     * Starts the training on the training thread
+     */
+    void start() {
+        if (future != null) throw new IllegalStateException("The training has already been started");
+        engine.resume();
+        future = EXECUTOR.submit(this::run);
+    }
+
+    /**
+     * Trains the rounds and delivers the last event, also if the training fails. A failure is logged and given to the listener with the last event, and it is thrown again so the future holds it too
+     */
+    void run() {
+        engine.episodeListener = this::episodeFinished;
+        try {
+            for (rounds = 0; rounds < totalRounds && !engine.isCancelled(); rounds++) {
+                engine.trainRound(map);
+                if (engine.monitor != null && engine.monitor.converged()) {
+                    rounds++;
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            error = e;
+            System.err.println("Training failed after " + rounds + " rounds");
+            e.printStackTrace();
+            throw e;
+        } finally {
+            engine.episodeListener = null;
+            Progress progress = progress();
+            progress.done = true;
+            progress.cancelled = engine.isCancelled();
+            progress.error = error;
+            pending.set(true);
+            dispatcher.accept(() -> listener.accept(progress));
+        }
+    }
+
+    /**
+     * Makes a progress event after an episode unless the listener has not taken the last one yet
+     */
+    void episodeFinished() {
+        if (!pending.compareAndSet(false, true)) return;
+        Progress progress = progress();
+        dispatcher.accept(() -> {
+            pending.set(false);
+            listener.accept(progress);
+        });
+    }
+
+    /**
+     * Reads the progress from the engine, called on the training thread
+     *
+     * @return Returns the progress
+     */
+    Progress progress() {
+        Progress progress = new Progress();
+        progress.rounds = rounds;
+        progress.totalRounds = totalRounds;
+        progress.episodes = engine.episodes;
+        progress.steps = engine.steps;
+        progress.lastEpisodeSteps = engine.lastEpisodeSteps;
+        progress.lastEpisodeStopped = engine.lastEpisodeStopped;
+        progress.maxDelta = engine.logic.maxDelta;
+        progress.converged = engine.monitor != null && engine.monitor.converged();
+        progress.frame = FrameSnapshot.of(engine.logic);
+        return progress;
+    }
+
+    /**
+     * Stops the training as soon as possible. The listener still gets the last event
+     */
+    void cancel() {
+        engine.cancel();
+    }
+
+    /**
+     * Finds if the training is over
+     *
+     * @return Returns true if the training has finished or been cancelled
+     */
+    boolean isDone() {
+        return future != null && future.isDone();
+    }
+}
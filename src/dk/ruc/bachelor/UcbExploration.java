@@ -0,0 +1,82 @@
+package dk.ruc.bachelor;
+
+/**
+ * Upper confidence bound exploration. Each valid action gets a bonus of c * sqrt(ln(visits of the state) / visits of the action) on top of its value, so actions that are rarely taken get tried, and an action that has never been taken is always tried first. The visits are counted in a table like the Q-table with the same storage, so they also work for sparse tables. The values are divided by the greatest absolute value of the state, but never by less than 1, because values far from the goal are many times smaller than values near it, so c is relative to the best action of the state.
+ * <p>
+ * The agent only sees the fields around it, so many places share a state. Balancing the visits of the actions of such a state would make every step undo the last one, and the agent would never leave the area it started in. A state where all valid actions have the same value therefore gets a random valid action, and the bonus is only used where the values tell the actions apart
+ */
+class UcbExploration implements ExplorationStrategy {
+
+    //How much rarely taken actions are preferred
+    double c;
+
+    //Times each action has been taken in each state
+    QTable counts;
+
+    /**
+     * Constructor sets how much rarely taken actions are preferred
+     *
+     * @param cInput The exploration constant, sqrt(2) is the usual choice
+     */
+    UcbExploration(double cInput) {
+        if (cInput < 0) throw new IllegalArgumentException("The exploration constant can not be negative");
+        c = cInput;
+    }
+
+    @Override
+    public int decide(Logic logic, int validActions) {
+        if (counts == null || counts.numberOfStates != logic.numberOfStates || counts.storage != logic.storage) {
+            counts = QTable.create(logic.storage == QTable.Storage.SPARSE ? QTable.Precision.FLOAT : QTable.Precision.INT, logic.storage, logic.numberOfStates, logic.numberOfActions);
+        }
+        long state = logic.state;
+
+        //Untried actions come first, picked at random among them
+        double stateVisits = 0;
+        int untried = 0;
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        double scale = 1;
+        for (int actions = validActions; actions != 0; actions &= actions - 1) {
+            int action = Integer.numberOfTrailingZeros(actions);
+            double visits = counts.get(state, action);
+            if (visits == 0) untried |= 1 << action;
+            stateVisits += visits;
+            double value = ExplorationStrategy.value(logic, state, action);
+            minValue = Math.min(minValue, value);
+            maxValue = Math.max(maxValue, value);
+            scale = Math.max(scale, Math.abs(value));
+        }
+        int bestAction;
+        if (minValue == maxValue) bestAction = logic.randomAction(validActions);
+        else if (untried != 0) bestAction = logic.randomAction(untried);
+        else {
+            double logVisits = Math.log(stateVisits);
+            int bestActions = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int actions = validActions; actions != 0; actions &= actions - 1) {
+                int action = Integer.numberOfTrailingZeros(actions);
+                double score = ExplorationStrategy.value(logic, state, action) / scale + c * Math.sqrt(logVisits / counts.get(state, action));
+                if (score > bestScore) {
+                    bestActions = 0;
+                    bestScore = score;
+                }
+                if (score == bestScore) bestActions |= 1 << action;
+            }
+
+            //Ties are broken at random, otherwise the agent walks the same circle in states that look alike
+            bestAction = logic.randomAction(bestActions);
+        }
+        counts.set(state, bestAction, counts.get(state, bestAction) + 1);
+        return bestAction;
+    }
+
+    @Override
+    public void reset() {
+        if (counts != null) counts.fill(0);
+    }
+
+    @Override
+    public ExplorationStrategy copy() {
+        return new UcbExploration(c);
+    }
+}
@@ -0,0 +1,99 @@
+package dk.ruc.bachelor;
+
+/**
+ * Generator using the xoroshiro128++ algorithm. It only needs two longs of state and a few shifts per number. Splitting jumps 2^64 numbers ahead, so the generators never use the same part of the sequence
+ */
+class XoroshiroRng implements Rng {
+
+    //The state of the generator
+    long s0, s1;
+
+    //Polynomial used to jump 2^64 numbers ahead
+    static final long[] JUMP = {0x2bd7a6a6e99c2ddcL, 0x0992ccaf6a6fca05L};
+
+    /**
+     * Constructor for a seeded generator. The seed is spread over the state with SplitMix64, so similar seeds give different generators
+     *
+     * @param seed The seed
+     */
+    XoroshiroRng(long seed) {
+        seed += 0x9e3779b97f4a7c15L;
+        s0 = mix(seed);
+        seed += 0x9e3779b97f4a7c15L;
+        s1 = mix(seed);
+    }
+
+    /**
+     * Constructor for a generator with a given state
+     *
+     * @param s0Input First half of the state
+     * @param s1Input Second half of the state
+     */
+    XoroshiroRng(long s0Input, long s1Input) {
+        s0 = s0Input;
+        s1 = s1Input;
+    }
+
+    /**
+     * The mixing function of SplitMix64
+     *
+     * @param z The value to mix
+     * @return Returns the mixed value
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s0 + s1, 17) + s0;
+        s1 ^= s0;
+        s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        s1 = Long.rotateLeft(s1, 28);
+        return result;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        //Multiply a random 32 bit number by the bound and use the upper 32 bits, rejecting the few numbers that would make it biased
+        long product = (nextLong() >>> 32) * bound;
+        if (Integer.compareUnsigned((int) product, bound) < 0) {
+            int threshold = Integer.remainderUnsigned(-bound, bound);
+            while (Integer.compareUnsigned((int) product, threshold) < 0) product = (nextLong() >>> 32) * bound;
+        }
+        return (int) (product >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public Rng split() {
+        Rng split = new XoroshiroRng(s0, s1);
+        jump();
+        return split;
+    }
+
+    /**
+     * Moves the generator 2^64 numbers ahead
+     */
+    void jump() {
+        long jumped0 = 0;
+        long jumped1 = 0;
+        for (long jump : JUMP) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((jump & 1L << bit) != 0) {
+                    jumped0 ^= s0;
+                    jumped1 ^= s1;
+                }
+                nextLong();
+            }
+        }
+        s0 = jumped0;
+        s1 = jumped1;
+    }
+}